@@ -0,0 +1,63 @@
+package com.attendance.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stands in for replication when trying replica routing locally with two
+ * H2 databases: copies the whole primary into the replica at a fixed
+ * interval, so the replica lags by up to that interval. Reads already on
+ * the replica while a copy runs may fail. Development only.
+ */
+@Slf4j
+@Component
+@Profile("h2-replica")
+@RequiredArgsConstructor
+public class H2ReplicaCopier {
+
+    // Statements outside read-only transactions always go to the primary
+    private final DataSource dataSource;
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final Environment environment;
+
+    @Scheduled(fixedDelayString = "${datasource.replica.copy-interval-ms:5000}")
+    public void copy() {
+        Path script = null;
+        try {
+            script = Files.createTempFile("replica-", ".sql");
+            String location = script.toAbsolutePath().toString().replace("'", "''");
+            new JdbcTemplate(dataSource).execute("SCRIPT TO '" + location + "'");
+
+            JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(
+                    environment.getRequiredProperty("datasource.replica.url"),
+                    environment.getProperty("datasource.replica.username", "sa"),
+                    environment.getProperty("datasource.replica.password", "")));
+            replicaLagMonitor.markUnavailable();
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + location + "'");
+            replicaLagMonitor.check();
+        } catch (IOException | DataAccessException e) {
+            log.warn("Could not copy the primary H2 database to the replica: {}", e.getMessage());
+        } finally {
+            if (script != null) {
+                try {
+                    Files.deleteIfExists(script);
+                } catch (IOException e) {
+                    log.debug("Could not delete {}", script);
+                }
+            }
+        }
+    }
+}
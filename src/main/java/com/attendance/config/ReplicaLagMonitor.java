@@ -0,0 +1,112 @@
+package com.attendance.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Measures how far the replica lags behind the primary. The primary's
+ * heartbeat row is updated every interval; the lag is how old the copy of
+ * that row on the replica is. A replica that cannot be read, or has no
+ * heartbeat yet, counts as unusable.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+
+    @Value("${datasource.replica.max-lag-ms:10000}")
+    private long maxLagMillis;
+
+    @Value("${datasource.replica.live-max-lag-ms:2000}")
+    private long liveMaxLagMillis;
+
+    // Milliseconds, or -1 while the replica is unusable
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+    }
+
+    /**
+     * Whether reads at this consistency may go to the replica
+     *
+     * @param consistency Consistency the reads need
+     * @return True if the replica is usable and recent enough
+     */
+    public boolean allows(ReplicaRouting.Consistency consistency) {
+        long lag = lagMillis;
+        return switch (consistency) {
+            case DEFAULT -> lag >= 0 && lag <= maxLagMillis;
+            case LIVE -> lag >= 0 && lag <= liveMaxLagMillis;
+            case PRIMARY -> false;
+        };
+    }
+
+    /**
+     * @return Lag in milliseconds, or -1 if the replica is unusable
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @PostConstruct
+    void createTable() {
+        primary.execute(CREATE_TABLE);
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.heartbeat-ms:1000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            if (primary.update("UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1", now) == 0) {
+                primary.update("INSERT INTO replica_heartbeat (id, beat_millis) VALUES (1, ?)", now);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not write replica heartbeat: {}", e.getMessage());
+        }
+        check();
+    }
+
+    /**
+     * Re-measure the lag now
+     */
+    public void check() {
+        long lag;
+        try {
+            Long beat = replica.queryForObject("SELECT beat_millis FROM replica_heartbeat WHERE id = 1", Long.class);
+            lag = beat != null ? Math.max(0, System.currentTimeMillis() - beat) : -1;
+        } catch (DataAccessException e) {
+            lag = -1;
+        }
+        update(lag);
+    }
+
+    /**
+     * Stop routing to the replica until the next check
+     */
+    public void markUnavailable() {
+        update(-1);
+    }
+
+    private void update(long lag) {
+        boolean wasUsable = allows(ReplicaRouting.Consistency.DEFAULT);
+        lagMillis = lag;
+        boolean usable = allows(ReplicaRouting.Consistency.DEFAULT);
+        if (wasUsable && !usable) {
+            log.warn("Replica unusable (lag {} ms); read-only transactions go to the primary", lag);
+        } else if (!wasUsable && usable) {
+            log.info("Replica usable again (lag {} ms)", lag);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.attendance.config;
+
+import java.util.function.Supplier;
+
+/**
+ * How fresh the reads of the current thread must be. Read-only
+ * transactions go to the replica by default; code that needs its own or
+ * just-committed writes asks for more. Only matters when a replica is
+ * configured.
+ */
+public final class ReplicaRouting {
+
+    public enum Consistency {
+        /** Replica, unless it lags more than datasource.replica.max-lag-ms */
+        DEFAULT,
+        /** Replica, unless it lags more than datasource.replica.live-max-lag-ms; for live views */
+        LIVE,
+        /** Always the primary; for caches that reload right after a commit */
+        PRIMARY
+    }
+
+    private static final ThreadLocal<Consistency> CURRENT = ThreadLocal.withInitial(() -> Consistency.DEFAULT);
+
+    private ReplicaRouting() {
+    }
+
+    public static Consistency current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run reads for a live view
+     */
+    public static <T> T live(Supplier<T> reads) {
+        return with(Consistency.LIVE, reads);
+    }
+
+    /**
+     * Run reads against the primary
+     */
+    public static <T> T onPrimary(Supplier<T> reads) {
+        return with(Consistency.PRIMARY, reads);
+    }
+
+    private static <T> T with(Consistency consistency, Supplier<T> reads) {
+        Consistency previous = CURRENT.get();
+        // Never relax what an outer caller asked for
+        CURRENT.set(consistency.compareTo(previous) > 0 ? consistency : previous);
+        try {
+            return reads.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
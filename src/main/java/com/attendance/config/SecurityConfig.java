@@ -43,6 +43,10 @@ public class SecurityConfig {
                                                 .requestMatchers("/settings/**").hasRole("ADMIN")
                                                 .requestMatchers("/admin/**").hasRole("ADMIN")
                                                 .requestMatchers("/api/camera/**").hasRole("ADMIN")
+                                                .requestMatchers("/api/pipeline/**").hasRole("ADMIN")
+                                                .requestMatchers("/api/attendance/rollup/**").hasRole("ADMIN")
+                                                .requestMatchers("/api/attendance/archive/**").hasRole("ADMIN")
+                                                .requestMatchers("/api/students/cohort/**").hasRole("ADMIN")
                                                 .anyRequest().authenticated())
                                 .csrf(csrf -> csrf
                                                 .ignoringRequestMatchers("/ws/**") // WebSockets need CSRF ignore or
@@ -1,15 +1,46 @@
 package com.attendance.config;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * STOMP over WebSocket for the dashboards. The broker configuration is
+ * declared here rather than imported by @EnableWebSocketMessageBroker, so
+ * that sessions can be decorated to drop messages of slow subscribers.
+ */
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.send-buffer-size-limit-kb:512}")
+    private int sendBufferSizeLimitKb;
+
+    @Value("${websocket.outbound.pool-size:4}")
+    private int outboundPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:1000}")
+    private int outboundQueueCapacity;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
@@ -20,4 +51,71 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").withSockJS();
     }
+
+    /**
+     * Bound what a slow subscriber can cost us. Once a session's send
+     * buffer is full its oldest queued messages are dropped rather than
+     * buffered without limit or the session closed; dashboards only need
+     * the latest state. A send blocked past the time limit still closes the
+     * session. The limits are applied by {@link DroppingSubProtocolWebSocketHandler}.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeLimitKb * 1024);
+    }
+
+    /**
+     * Fixed pool and queue for outbound messages. When the queue is full the
+     * publishing thread sends the message itself, which slows the publisher
+     * down instead of silently losing messages of sessions that keep up;
+     * slow sessions drop their own backlog in their decorator.
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("clientOutboundChannel-");
+        executor.setCorePoolSize(outboundPoolSize);
+        executor.setMaxPoolSize(outboundPoolSize);
+        executor.setQueueCapacity(outboundQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        registration.taskExecutor(executor);
+    }
+
+    /**
+     * What @EnableWebSocketMessageBroker would import, with the session
+     * handler swapped for {@link DroppingSubProtocolWebSocketHandler}
+     */
+    @Configuration
+    static class BrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+        @Override
+        @Bean
+        public WebSocketHandler subProtocolWebSocketHandler(
+                @Qualifier("clientInboundChannel") AbstractSubscribableChannel clientInboundChannel,
+                @Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel) {
+            SubProtocolWebSocketHandler handler = new DroppingSubProtocolWebSocketHandler(clientInboundChannel,
+                    clientOutboundChannel);
+            handler.setPhase(getPhase());
+            return handler;
+        }
+    }
+
+    /**
+     * Decorates every session with the configured send limits and the DROP
+     * overflow strategy; the stock handler always uses TERMINATE.
+     */
+    static class DroppingSubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+
+        DroppingSubProtocolWebSocketHandler(MessageChannel clientInboundChannel,
+                SubscribableChannel clientOutboundChannel) {
+            super(clientInboundChannel, clientOutboundChannel);
+        }
+
+        @Override
+        protected WebSocketSession decorateSession(WebSocketSession session) {
+            return new ConcurrentWebSocketSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit(),
+                    ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        }
+    }
 }
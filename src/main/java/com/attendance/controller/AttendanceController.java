@@ -1,12 +1,23 @@
 package com.attendance.controller;
 
 import com.attendance.dto.ApiResponse;
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.ArchivedTerm;
 import com.attendance.model.Attendance;
+import com.attendance.model.Classroom;
+import com.attendance.model.LectureSession;
+import com.attendance.pipeline.RecognitionPipeline;
+import com.attendance.service.AttendanceAnalyticsService;
+import com.attendance.service.AttendanceArchiveService;
+import com.attendance.service.AttendanceBitmapIndex;
 import com.attendance.service.AttendanceService;
+import com.attendance.service.DailySummaryService;
+import com.attendance.service.DetectionEventService;
 import com.attendance.service.ExcelExportService;
+import com.attendance.service.ReportService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -15,9 +26,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for attendance management
@@ -30,6 +44,13 @@ public class AttendanceController {
 
     private final AttendanceService attendanceService;
     private final ExcelExportService excelExportService;
+    private final ReportService reportService;
+    private final AttendanceAnalyticsService attendanceAnalyticsService;
+    private final AttendanceBitmapIndex attendanceBitmapIndex;
+    private final RecognitionPipeline recognitionPipeline;
+    private final DetectionEventService detectionEventService;
+    private final DailySummaryService dailySummaryService;
+    private final AttendanceArchiveService attendanceArchiveService;
 
     /**
      * Process camera image and mark attendance
@@ -49,8 +70,8 @@ public class AttendanceController {
                         .body(ApiResponse.error("Image file is required"));
             }
 
-            List<Attendance> attendanceRecords = attendanceService
-                    .processCameraFeed(imageFile, classroomId);
+            List<Attendance> attendanceRecords = recognitionPipeline
+                    .processUpload(imageFile.getBytes(), classroomId);
 
             String message = String.format("Processed camera feed, marked attendance for %d student(s)",
                     attendanceRecords.size());
@@ -60,6 +81,10 @@ public class AttendanceController {
             log.error("Validation error during camera feed processing", e);
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Recognition pipeline rejected camera feed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("Recognition is busy, please retry: " + e.getMessage()));
         } catch (Exception e) {
             log.error("Error processing camera feed", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -68,33 +93,85 @@ public class AttendanceController {
     }
 
     /**
-     * Export attendance to Excel
+     * Export attendance to Excel from the report cache. Unchanged days are a
+     * plain file copy; otherwise the report is regenerated into the cache.
      * 
      * @param classroomId Classroom ID
      * @param date        Attendance date
-     * @return Excel file download
+     * @param response    HTTP response the file is written to
      */
     @GetMapping("/export")
-    public ResponseEntity<InputStreamResource> exportAttendance(
+    public void exportAttendance(
             @RequestParam("classroomId") Long classroomId,
-            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            HttpServletResponse response) throws IOException {
+
+        String filename = excelExportService.getFilename(date);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
 
         try {
-            ByteArrayInputStream excelFile = excelExportService
-                    .exportAttendanceToExcel(classroomId, date);
+            // Served from the report cache, generated into it first if the data changed since
+            Path report = reportService.getDailyReport(classroomId, date);
+            response.setContentLengthLong(Files.size(report));
+            Files.copy(report, response.getOutputStream());
+            response.flushBuffer();
+        } catch (Exception e) {
+            log.error("Error exporting attendance to Excel", e);
+            // Once bytes have been sent the status can no longer change
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
 
-            String filename = excelExportService.getFilename(date);
+    /**
+     * Export attendance of several classrooms over a date range
+     * 
+     * @param from         First date
+     * @param to           Last date
+     * @param classroomIds Classroom IDs, all classrooms when omitted
+     * @param format       "zip" for one workbook per classroom, "xlsx" for one
+     *                     workbook with a sheet per classroom
+     * @param response     HTTP response the file is streamed to
+     */
+    @GetMapping("/export/range")
+    public void exportAttendanceRange(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "classroomIds", required = false) List<Long> classroomIds,
+            @RequestParam(value = "format", defaultValue = "zip") String format,
+            HttpServletResponse response) throws IOException {
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+        ExcelExportService.RangeFormat rangeFormat;
+        List<Classroom> classrooms;
+        try {
+            rangeFormat = ExcelExportService.RangeFormat.parse(format);
+            classrooms = excelExportService.resolveRange(classroomIds, from, to);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(new InputStreamResource(excelFile));
+        String filename = excelExportService.getFilename(from, to, rangeFormat);
+        response.setContentType(rangeFormat == ExcelExportService.RangeFormat.ZIP
+                ? "application/zip" : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+
+        try {
+            if (rangeFormat == ExcelExportService.RangeFormat.ZIP) {
+                excelExportService.exportRangeAsZip(classrooms, from, to, response.getOutputStream());
+            } else {
+                excelExportService.exportRangeAsWorkbook(classrooms, from, to, response.getOutputStream());
+            }
+            response.flushBuffer();
         } catch (Exception e) {
-            log.error("Error exporting attendance to Excel", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.error("Error exporting attendance range to Excel", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -106,13 +183,13 @@ public class AttendanceController {
      * @return API response with attendance list
      */
     @GetMapping("/list")
-    public ResponseEntity<ApiResponse<List<Attendance>>> getAttendanceList(
+    public ResponseEntity<ApiResponse<List<AttendanceRowDTO>>> getAttendanceList(
             @RequestParam("classroomId") Long classroomId,
             @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
 
         try {
             log.info("Fetching attendance for date: {} and classroom: {}", date, classroomId);
-            List<Attendance> attendanceList = attendanceService
+            List<AttendanceRowDTO> attendanceList = attendanceService
                     .getAttendanceByDateAndClassroom(date, classroomId);
             log.info("Found {} attendance records", attendanceList.size());
 
@@ -132,11 +209,11 @@ public class AttendanceController {
      * @return API response with today's attendance
      */
     @GetMapping("/today/{classroomId}")
-    public ResponseEntity<ApiResponse<List<Attendance>>> getTodayAttendance(
+    public ResponseEntity<ApiResponse<List<AttendanceRowDTO>>> getTodayAttendance(
             @PathVariable Long classroomId) {
 
         try {
-            List<Attendance> attendanceList = attendanceService.getTodayAttendance(classroomId);
+            List<AttendanceRowDTO> attendanceList = attendanceService.getTodayAttendance(classroomId);
 
             return ResponseEntity.ok(ApiResponse.success(
                     "Today's attendance retrieved successfully", attendanceList));
@@ -168,4 +245,287 @@ public class AttendanceController {
                     .body(ApiResponse.error("Failed to retrieve attendance statistics"));
         }
     }
+
+    /**
+     * Get attendance statistics for many students in one call
+     * 
+     * @param studentIds  Student IDs
+     * @param department  Department of the students
+     * @param classroomId Classroom to count within
+     * @return API response with statistics per student
+     */
+    @GetMapping("/stats/students")
+    public ResponseEntity<ApiResponse<List<AttendanceService.StudentAttendanceStats>>> getStudentStats(
+            @RequestParam(value = "studentIds", required = false) List<Long> studentIds,
+            @RequestParam(value = "department", required = false) String department,
+            @RequestParam(value = "classroomId", required = false) Long classroomId) {
+
+        try {
+            List<AttendanceService.StudentAttendanceStats> stats = attendanceService
+                    .getStudentStats(studentIds, department, classroomId);
+            return ResponseEntity.ok(ApiResponse.success(
+                    "Student statistics retrieved successfully", stats));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving student statistics", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve student statistics"));
+        }
+    }
+
+    /**
+     * Get attendance trends over a date range
+     * 
+     * @param from        First date
+     * @param to          Last date
+     * @param bucket      "day", "week" or "month"
+     * @param groupBy     "classroom", "department" or "student"
+     * @param classroomId Only count this classroom
+     * @param department  Only count students of this department
+     * @return API response with statistics per bucket and group
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<ApiResponse<List<AttendanceAnalyticsService.BucketStats>>> getTrends(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "bucket", defaultValue = "day") String bucket,
+            @RequestParam(value = "groupBy", defaultValue = "classroom") String groupBy,
+            @RequestParam(value = "classroomId", required = false) Long classroomId,
+            @RequestParam(value = "department", required = false) String department) {
+
+        try {
+            List<AttendanceAnalyticsService.BucketStats> trends = attendanceAnalyticsService.getTrends(from, to,
+                    parseEnum(AttendanceAnalyticsService.Bucket.class, bucket, "bucket"),
+                    parseEnum(AttendanceAnalyticsService.Dimension.class, groupBy, "groupBy"),
+                    classroomId, department);
+            return ResponseEntity.ok(ApiResponse.success("Attendance trends retrieved successfully", trends));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving attendance trends", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve attendance trends"));
+        }
+    }
+
+    /**
+     * Find students who missed a number of consecutive lectures in a term
+     * 
+     * @param classroomIds Classrooms to look in
+     * @param date         Any day of the term (default: today)
+     * @param minStreak    Lectures missed in a row
+     * @param current      Only count the streak running up to the last lecture
+     * @param match        "all" or "any" of the classrooms
+     * @return API response with the matching students per classroom
+     */
+    @GetMapping("/patterns/absence-streaks")
+    public ResponseEntity<ApiResponse<List<AttendanceBitmapIndex.StudentPattern>>> findAbsenceStreaks(
+            @RequestParam("classroomIds") List<Long> classroomIds,
+            @RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(value = "minStreak", defaultValue = "3") int minStreak,
+            @RequestParam(value = "current", defaultValue = "false") boolean current,
+            @RequestParam(value = "match", defaultValue = "any") String match) {
+
+        try {
+            List<AttendanceBitmapIndex.StudentPattern> students = attendanceBitmapIndex.findAbsenceStreaks(
+                    classroomIds, date != null ? date : LocalDate.now(), minStreak, current,
+                    parseEnum(AttendanceBitmapIndex.Match.class, match, "match"));
+            return ResponseEntity.ok(ApiResponse.success("Absence streaks retrieved successfully", students));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving absence streaks", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve absence streaks"));
+        }
+    }
+
+    /**
+     * Find students whose attendance rate in a term is below a threshold
+     * 
+     * @param classroomIds Classrooms to look in
+     * @param date         Any day of the term (default: today)
+     * @param rate         Threshold in percent
+     * @param match        "all" or "any" of the classrooms
+     * @return API response with the matching students per classroom
+     */
+    @GetMapping("/patterns/below-rate")
+    public ResponseEntity<ApiResponse<List<AttendanceBitmapIndex.StudentPattern>>> findBelowRate(
+            @RequestParam("classroomIds") List<Long> classroomIds,
+            @RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(value = "rate", defaultValue = "75") double rate,
+            @RequestParam(value = "match", defaultValue = "any") String match) {
+
+        try {
+            List<AttendanceBitmapIndex.StudentPattern> students = attendanceBitmapIndex.findBelowRate(
+                    classroomIds, date != null ? date : LocalDate.now(), rate,
+                    parseEnum(AttendanceBitmapIndex.Match.class, match, "match"));
+            return ResponseEntity.ok(ApiResponse.success("Students below rate retrieved successfully", students));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving students below rate", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve students below rate"));
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Get how far the attendance rollup lags behind the detection event log
+     * 
+     * @return API response with rollup status
+     */
+    @GetMapping("/rollup/status")
+    public ResponseEntity<ApiResponse<DetectionEventService.RollupStatus>> getRollupStatus() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(
+                    "Rollup status retrieved successfully", detectionEventService.getStatus()));
+        } catch (Exception e) {
+            log.error("Error retrieving rollup status", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve rollup status"));
+        }
+    }
+
+    /**
+     * Rebuild one day's attendance from its detection events
+     * 
+     * @param date Attendance date
+     * @return API response with the number of records rebuilt
+     */
+    @PostMapping("/rollup/rebuild")
+    public ResponseEntity<ApiResponse<Integer>> rebuildAttendance(
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        try {
+            int rows = detectionEventService.rebuild(date);
+            return ResponseEntity.ok(ApiResponse.success(
+                    String.format("Rebuilt %d attendance record(s) for %s", rows, date), rows));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error rebuilding attendance for {}", date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to rebuild attendance: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * List the lectures of one day with their snapshots and final counts
+     * 
+     * @param date Lecture date
+     * @return API response with the lectures, ordered by classroom
+     */
+    @GetMapping("/rollup/lectures")
+    public ResponseEntity<ApiResponse<List<LectureSession>>> getLectureSessions(
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Lectures retrieved successfully",
+                    detectionEventService.getLectureSessions(date)));
+        } catch (Exception e) {
+            log.error("Error retrieving lectures of {}", date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve lectures"));
+        }
+    }
+
+    /**
+     * Finalize one lecture now instead of at the classroom's end time, or
+     * again after a correction
+     * 
+     * @param classroomId Classroom ID
+     * @param date        Lecture date
+     * @return API response with the finalized lecture
+     */
+    @PostMapping("/rollup/finalize")
+    public ResponseEntity<ApiResponse<LectureSession>> finalizeLecture(
+            @RequestParam("classroomId") Long classroomId,
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        try {
+            LectureSession session = detectionEventService.finalizeLecture(classroomId, date);
+            return ResponseEntity.ok(ApiResponse.success(String.format(
+                    "Finalized lecture: %d present, %d late, %d absent",
+                    session.getPresent(), session.getLate(), session.getAbsent()), session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error finalizing the lecture of classroom {} on {}", classroomId, date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to finalize lecture: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Compare the daily attendance summary with the records and rebuild the
+     * days that differ
+     * 
+     * @param from First date
+     * @param to   Last date
+     * @return API response with the days checked and repaired
+     */
+    @PostMapping("/rollup/summary/reconcile")
+    public ResponseEntity<ApiResponse<DailySummaryService.ReconcileResult>> reconcileDailySummary(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        try {
+            DailySummaryService.ReconcileResult result = dailySummaryService.reconcile(from, to);
+            return ResponseEntity.ok(ApiResponse.success(
+                    String.format("Checked %d day(s), repaired %d", result.daysChecked(), result.daysRepaired()),
+                    result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error reconciling daily summary for {} to {}", from, to, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to reconcile daily summary: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * List terms whose attendance is archived or being archived
+     * 
+     * @return API response with the terms, oldest first
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<ApiResponse<List<ArchivedTerm>>> getArchivedTerms() {
+        return ResponseEntity.ok(ApiResponse.success("Archived terms retrieved successfully",
+                attendanceArchiveService.getArchivedTerms()));
+    }
+
+    /**
+     * Move the attendance of a closed term to the archive
+     * 
+     * @param date Any day of the term
+     * @return API response with the archived term
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<ApiResponse<ArchivedTerm>> archiveTerm(
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        try {
+            ArchivedTerm term = attendanceArchiveService.archiveTerm(date);
+            return ResponseEntity.ok(ApiResponse.success(String.format("Archived %d record(s) from %s to %s",
+                    term.getRowsArchived(), term.getTermStart(), term.getTermEnd()), term));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error archiving the term of {}", date, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to archive term: " + e.getMessage()));
+        }
+    }
 }
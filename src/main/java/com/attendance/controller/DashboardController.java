@@ -1,5 +1,6 @@
 package com.attendance.controller;
 
+import com.attendance.dto.StudentPageDTO;
 import com.attendance.model.Student;
 import com.attendance.repository.AttendanceRepository;
 import com.attendance.service.AttendanceService;
@@ -24,6 +25,8 @@ import java.time.LocalDate;
 @RequiredArgsConstructor
 public class DashboardController {
 
+    private static final int STUDENTS_PAGE_SIZE = 50;
+
     private final StudentService studentService;
     private final AttendanceService attendanceService;
 
@@ -64,13 +67,24 @@ public class DashboardController {
     /**
      * Student management page
      * 
-     * @param model Model
+     * @param q          Search prefix
+     * @param department Department filter
+     * @param model      Model
      * @return Students template
      */
     @GetMapping("/students")
-    public String students(Model model) {
+    public String students(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "department", required = false) String department,
+            Model model) {
         try {
-            model.addAttribute("students", studentService.getAllStudents());
+            // Only the first page is rendered; the page loads the rest from /api/students
+            StudentPageDTO page = studentService.getStudentPage(null, q, department, STUDENTS_PAGE_SIZE);
+            model.addAttribute("students", page.getStudents());
+            model.addAttribute("nextCursor", page.getNextCursor());
+            model.addAttribute("departments", studentService.getDepartments());
+            model.addAttribute("q", q);
+            model.addAttribute("department", department);
         } catch (Exception e) {
             log.error("Error loading students", e);
             model.addAttribute("error", "Failed to load students");
@@ -0,0 +1,31 @@
+package com.attendance.controller;
+
+import com.attendance.dto.ApiResponse;
+import com.attendance.pipeline.RecognitionPipeline;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing recognition pipeline health
+ */
+@RestController
+@RequestMapping("/api/pipeline")
+@RequiredArgsConstructor
+public class PipelineController {
+
+    private final RecognitionPipeline recognitionPipeline;
+
+    /**
+     * Get queue depth, drop counts and latency for every pipeline stage
+     * 
+     * @return API response with pipeline statistics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<RecognitionPipeline.PipelineStats>> getStats() {
+        return ResponseEntity.ok(ApiResponse.success(
+                "Pipeline statistics retrieved successfully", recognitionPipeline.getStats()));
+    }
+}
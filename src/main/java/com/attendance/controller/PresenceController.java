@@ -0,0 +1,31 @@
+package com.attendance.controller;
+
+import com.attendance.dto.ClassroomUpdateDTO;
+import com.attendance.service.PresenceRoster;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+/**
+ * STOMP entry point for live classroom views. A client subscribes to
+ * /topic/attendance/{classroomId} for deltas, then to
+ * /app/attendance/{classroomId}/snapshot for the current roster.
+ */
+@Controller
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceRoster presenceRoster;
+
+    /**
+     * Reply to the subscriber with today's roster of a classroom
+     * 
+     * @param classroomId Classroom ID
+     * @return Roster snapshot
+     */
+    @SubscribeMapping("/attendance/{classroomId}/snapshot")
+    public ClassroomUpdateDTO getSnapshot(@DestinationVariable Long classroomId) {
+        return presenceRoster.getSnapshot(classroomId);
+    }
+}
@@ -0,0 +1,115 @@
+package com.attendance.controller;
+
+import com.attendance.dto.ApiResponse;
+import com.attendance.service.ExcelExportService;
+import com.attendance.service.ReportJob;
+import com.attendance.service.ReportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST controller for background report jobs: submit, poll, download
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private final ReportService reportService;
+
+    /**
+     * Submit a range export job
+     * 
+     * @param from         First date
+     * @param to           Last date
+     * @param classroomIds Classroom IDs, all classrooms when omitted
+     * @param format       "zip" or "xlsx"
+     * @return API response with the job
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ApiResponse<ReportJob>> submitJob(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "classroomIds", required = false) List<Long> classroomIds,
+            @RequestParam(value = "format", defaultValue = "zip") String format) {
+
+        try {
+            ReportJob job = reportService.submit(classroomIds, from, to, ExcelExportService.RangeFormat.parse(format));
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Report job submitted", job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Report job rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("Too many reports are being generated, please retry later"));
+        } catch (Exception e) {
+            log.error("Error submitting report job", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to submit report job"));
+        }
+    }
+
+    /**
+     * Get the status and progress of a job
+     * 
+     * @param jobId Job ID
+     * @return API response with the job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<ReportJob>> getJob(@PathVariable String jobId) {
+        return reportService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(ApiResponse.success("Report job retrieved", job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Report job not found or expired")));
+    }
+
+    /**
+     * Download the report of a finished job
+     * 
+     * @param jobId    Job ID
+     * @param response HTTP response the file is streamed to
+     */
+    @GetMapping("/jobs/{jobId}/file")
+    public void downloadReport(@PathVariable String jobId, HttpServletResponse response) throws IOException {
+        Optional<ReportJob> found = reportService.getJob(jobId);
+        if (found.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Report job not found or expired");
+            return;
+        }
+        ReportJob job = found.get();
+        if (job.getStatus() != ReportJob.Status.DONE) {
+            response.sendError(HttpStatus.CONFLICT.value(), "Report is not ready: " + job.getStatus());
+            return;
+        }
+
+        response.setContentType(job.getFormat() == ExcelExportService.RangeFormat.ZIP
+                ? "application/zip" : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.getFilename());
+        try {
+            response.setContentLengthLong(Files.size(job.getFile()));
+            Files.copy(job.getFile(), response.getOutputStream());
+            response.flushBuffer();
+        } catch (NoSuchFileException e) {
+            // Replaced by a newer version of the same report, or past retention
+            response.reset();
+            response.sendError(HttpStatus.GONE.value(), "Report has been replaced, please submit it again");
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.attendance.model.CameraConfig;
 import com.attendance.model.Classroom;
 import com.attendance.repository.CameraConfigRepository;
 import com.attendance.repository.ClassroomRepository;
+import com.attendance.service.ClassroomConfigCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -24,6 +25,7 @@ public class SettingsController {
     private final ClassroomRepository classroomRepository;
     private final CameraConfigRepository cameraConfigRepository;
     private final com.attendance.service.CameraService cameraService;
+    private final ClassroomConfigCache classroomConfigCache;
 
     @GetMapping("/settings")
     public String showSettings(Model model) {
@@ -78,6 +80,7 @@ public class SettingsController {
             config.setActive(active);
 
             cameraConfigRepository.save(config);
+            classroomConfigCache.invalidate();
             redirectAttributes.addFlashAttribute("successMessage", "Settings saved for " + classroom.getCourseCode());
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error saving settings: " + e.getMessage());
@@ -95,6 +98,7 @@ public class SettingsController {
 
             config.setActive(active);
             cameraConfigRepository.save(config);
+            classroomConfigCache.invalidate();
 
             String status = active ? "started" : "stopped";
             redirectAttributes.addFlashAttribute("successMessage",
@@ -2,17 +2,22 @@ package com.attendance.controller;
 
 import com.attendance.dto.ApiResponse;
 import com.attendance.dto.StudentDTO;
+import com.attendance.dto.StudentPageDTO;
 import com.attendance.model.Student;
+import com.attendance.service.StudentRemovalService;
+import com.attendance.service.StudentRemovalService.RemovalResult;
 import com.attendance.service.StudentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.validation.BindingResult;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -27,6 +32,7 @@ import java.util.HashMap;
 public class StudentController {
 
         private final StudentService studentService;
+        private final StudentRemovalService studentRemovalService;
 
         /**
          * Register a new student with face image
@@ -64,6 +70,31 @@ public class StudentController {
                 }
         }
 
+        /**
+         * Get one page of the student directory
+         * 
+         * @param after      Cursor from the previous page
+         * @param q          Prefix of student ID, name or email
+         * @param department Department filter
+         * @param size       Page size
+         * @return API response with the page
+         */
+        @GetMapping
+        public ResponseEntity<ApiResponse<StudentPageDTO>> getStudentPage(
+                        @RequestParam(value = "after", required = false) String after,
+                        @RequestParam(value = "q", required = false) String q,
+                        @RequestParam(value = "department", required = false) String department,
+                        @RequestParam(value = "size", defaultValue = "50") int size) {
+                try {
+                        StudentPageDTO page = studentService.getStudentPage(after, q, department, size);
+                        return ResponseEntity.ok(ApiResponse.success("Students retrieved successfully", page));
+                } catch (Exception e) {
+                        log.error("Error retrieving students", e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(ApiResponse.error("Failed to retrieve students"));
+                }
+        }
+
         /**
          * Get all students
          * 
@@ -151,6 +182,32 @@ public class StudentController {
                 }
         }
 
+        /**
+         * Delete every student registered before a date, with all of their
+         * records
+         * 
+         * @param registeredBefore Registration date, exclusive
+         * @param department       Department, or all if omitted
+         * @return API response with what was deleted
+         */
+        @DeleteMapping("/cohort")
+        public ResponseEntity<ApiResponse<RemovalResult>> deleteCohort(
+                        @RequestParam("registeredBefore") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredBefore,
+                        @RequestParam(value = "department", required = false) String department) {
+                try {
+                        RemovalResult result = studentRemovalService.removeCohort(registeredBefore, department);
+                        return ResponseEntity.ok(ApiResponse.success(
+                                        String.format("Deleted %d student(s)", result.students()), result));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest()
+                                        .body(ApiResponse.error(e.getMessage()));
+                } catch (Exception e) {
+                        log.error("Error deleting student cohort", e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(ApiResponse.error("Failed to delete students"));
+                }
+        }
+
         /**
          * Update student photo
          * 
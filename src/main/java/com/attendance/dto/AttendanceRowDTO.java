@@ -0,0 +1,41 @@
+package com.attendance.dto;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Flat attendance row for listings and exports, read with its student and
+ * classroom columns in a single query
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceRowDTO {
+
+    private Long id;
+
+    private String studentId;
+
+    private String fullName;
+
+    private String email;
+
+    private String department;
+
+    private String courseCode;
+
+    private LocalDate attendanceDate;
+
+    private LocalTime checkInTime;
+
+    private AttendanceStatus status;
+
+    private Double confidenceScore;
+
+    private Integer detectionCount;
+}
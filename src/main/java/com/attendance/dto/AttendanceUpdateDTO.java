@@ -0,0 +1,43 @@
+package com.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+
+/**
+ * Compact real-time view of one student's presence in a classroom. Every
+ * change bumps the version, so clients can ignore anything older than what
+ * they already hold.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceUpdateDTO {
+
+    private Long studentId;
+
+    private String studentCode;
+
+    private String fullName;
+
+    private String department;
+
+    private String status;
+
+    private int detectionCount;
+
+    private LocalTime checkInTime;
+
+    private LocalTime lastSeen;
+
+    private Double confidence;
+
+    private long version;
+
+    public AttendanceUpdateDTO copy() {
+        return new AttendanceUpdateDTO(studentId, studentCode, fullName, department, status, detectionCount,
+                checkInTime, lastSeen, confidence, version);
+    }
+}
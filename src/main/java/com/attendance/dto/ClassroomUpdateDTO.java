@@ -0,0 +1,28 @@
+package com.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Presence roster of one classroom: the full roster when sent as a snapshot,
+ * otherwise only the entries that changed within one broadcast window. If
+ * reset is set the day was rebuilt and clients should request a new
+ * snapshot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassroomUpdateDTO {
+
+    private Long classroomId;
+
+    private LocalDate date;
+
+    private boolean reset;
+
+    private List<AttendanceUpdateDTO> updates;
+}
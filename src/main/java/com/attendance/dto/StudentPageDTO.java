@@ -0,0 +1,22 @@
+package com.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the student directory. Pass {@code nextCursor} back as
+ * {@code after} to get the following page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentPageDTO {
+
+    private List<StudentSummaryDTO> students;
+
+    /** Student ID of the last row, null on the last page */
+    private String nextCursor;
+}
@@ -0,0 +1,28 @@
+package com.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Student row for directory listings, without photo or face data
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentSummaryDTO {
+
+    private Long id;
+
+    private String studentId;
+
+    private String fullName;
+
+    private String email;
+
+    private String department;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,60 @@
+package com.attendance.model;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Attendance record of an archived term, moved out of the attendance table
+ * unchanged and keeping its id. Read-only.
+ */
+@Entity
+@Table(name = "attendance_archive", indexes = {
+        @Index(name = "idx_attendance_archive_classroom_date", columnList = "classroom_id, attendance_date"),
+        @Index(name = "idx_attendance_archive_student", columnList = "student_id"),
+        @Index(name = "idx_attendance_archive_date", columnList = "attendance_date")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedAttendance {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "student_id", nullable = false)
+    private Student student;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "classroom_id", nullable = false)
+    private Classroom classroom;
+
+    @Column(name = "attendance_date", nullable = false)
+    private LocalDate attendanceDate;
+
+    @Column(name = "check_in_time", nullable = false)
+    private LocalTime checkInTime;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AttendanceStatus status;
+
+    @Column(name = "confidence_score")
+    private Double confidenceScore;
+
+    @Column(name = "max_confidence_score")
+    private Double maxConfidenceScore;
+
+    @Column(name = "detection_count")
+    private Integer detectionCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
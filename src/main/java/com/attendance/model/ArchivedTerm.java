@@ -0,0 +1,54 @@
+package com.attendance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A term whose attendance records are moved, or being moved, to
+ * attendance_archive
+ */
+@Entity
+@Table(name = "archived_terms")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedTerm {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "term_start", nullable = false, unique = true)
+    private LocalDate termStart;
+
+    @Column(name = "term_end", nullable = false)
+    private LocalDate termEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(name = "rows_archived", nullable = false)
+    private long rowsArchived;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+
+    public enum Status {
+        /** Records are being moved; some may still be in the attendance table */
+        ARCHIVING,
+        ARCHIVED
+    }
+
+    public boolean contains(LocalDate date) {
+        return !date.isBefore(termStart) && !date.isAfter(termEnd);
+    }
+}
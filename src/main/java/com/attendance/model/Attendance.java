@@ -16,7 +16,10 @@ import java.time.LocalTime;
  */
 @Entity
 @Table(name = "attendance", uniqueConstraints = @UniqueConstraint(columnNames = { "student_id", "classroom_id",
-        "attendance_date" }))
+        "attendance_date" }), indexes = {
+                @Index(name = "idx_attendance_classroom_date", columnList = "classroom_id, attendance_date"),
+                @Index(name = "idx_attendance_date_status", columnList = "attendance_date, status")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,6 +56,9 @@ public class Attendance {
     @Column(name = "confidence_score")
     private Double confidenceScore;
 
+    @Column(name = "max_confidence_score")
+    private Double maxConfidenceScore;
+
     @Column(name = "detection_count")
     private Integer detectionCount = 0;
 
@@ -0,0 +1,44 @@
+package com.attendance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Attendance counts of one classroom on one day. Kept up to date by the
+ * attendance writer in the same transaction as the records, and repaired
+ * from the records by a reconciliation job.
+ */
+@Entity
+@Table(name = "daily_attendance_summary", uniqueConstraints = @UniqueConstraint(
+        name = "uk_daily_summary_date_classroom", columnNames = { "summary_date", "classroom_id" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyAttendanceSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "summary_date", nullable = false)
+    private LocalDate summaryDate;
+
+    @Column(name = "classroom_id", nullable = false)
+    private Long classroomId;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Column(nullable = false)
+    private long present;
+
+    @Column(nullable = false)
+    private long late;
+
+    @Column(nullable = false)
+    private long absent;
+}
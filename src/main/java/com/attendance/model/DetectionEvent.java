@@ -0,0 +1,47 @@
+package com.attendance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * One recognition of a student in one snapshot. Rows are only ever inserted;
+ * attendance records are rolled up from them in the background, except for
+ * uploads, which are applied as they are inserted.
+ */
+@Entity
+@Table(name = "detection_events", indexes = {
+        @Index(name = "idx_detection_events_date", columnList = "event_date, classroom_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetectionEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    @Column(name = "classroom_id", nullable = false)
+    private Long classroomId;
+
+    @Column(name = "event_date", nullable = false)
+    private LocalDate eventDate;
+
+    @Column(name = "seen_at", nullable = false)
+    private LocalTime seenAt;
+
+    @Column(nullable = false)
+    private Double confidence;
+
+    // Already in attendance when inserted; the rollup skips it, a rebuild counts it
+    @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean applied;
+}
@@ -0,0 +1,61 @@
+package com.attendance.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * A face encoding of a student, produced by one version of the encoder
+ * model. Kept apart from {@link Student} so student listings never read
+ * the binary encodings; a student may have several templates.
+ */
+@Entity
+@Table(name = "face_templates", indexes = {
+        @Index(name = "idx_face_templates_student_model", columnList = "student_id, model_version"),
+        @Index(name = "idx_face_templates_model", columnList = "model_version")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FaceTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "student_id", nullable = false)
+    private Student student;
+
+    @Column(name = "model_version", nullable = false, length = 64)
+    private String modelVersion;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] encoding;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public FaceTemplate(Student student, String modelVersion, byte[] encoding) {
+        this.student = student;
+        this.modelVersion = modelVersion;
+        this.encoding = encoding;
+    }
+}
@@ -0,0 +1,68 @@
+package com.attendance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One lecture of a classroom on one day: the camera snapshots actually
+ * analysed while it ran, and its counts once finalized. Statuses of the
+ * lecture's records are provisional until then.
+ */
+@Entity
+@Table(name = "lecture_sessions", uniqueConstraints = @UniqueConstraint(
+        name = "uk_lecture_session_classroom_date", columnNames = { "classroom_id", "lecture_date" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LectureSession {
+
+    public enum Status {
+        OPEN,
+        FINALIZED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "classroom_id", nullable = false)
+    private Long classroomId;
+
+    @Column(name = "lecture_date", nullable = false)
+    private LocalDate lectureDate;
+
+    @Column(name = "snapshots_planned", nullable = false)
+    private int snapshotsPlanned;
+
+    @Column(name = "snapshots_taken", nullable = false)
+    private int snapshotsTaken;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private long present;
+
+    @Column(nullable = false)
+    private long late;
+
+    @Column(nullable = false)
+    private long absent;
+
+    @Column(name = "finalized_at")
+    private LocalDateTime finalizedAt;
+
+    /**
+     * @return Snapshots the final statuses are measured against: those
+     *         taken, or those planned if the camera took none
+     */
+    public int getEffectiveSnapshots() {
+        return snapshotsTaken > 0 ? snapshotsTaken : snapshotsPlanned;
+    }
+}
@@ -0,0 +1,24 @@
+package com.attendance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last detection event folded into a rollup
+ */
+@Entity
+@Table(name = "rollup_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupWatermark {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "last_event_id", nullable = false)
+    private Long lastEventId;
+}
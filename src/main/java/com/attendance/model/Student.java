@@ -3,20 +3,21 @@ package com.attendance.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Student entity representing a student in the system
  */
 @Entity
-@Table(name = "students")
+@Table(name = "students", indexes = {
+        @Index(name = "idx_students_first_name", columnList = "first_name"),
+        @Index(name = "idx_students_last_name", columnList = "last_name"),
+        @Index(name = "idx_students_department", columnList = "department, student_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -46,23 +47,24 @@ public class Student {
     @Column(nullable = false)
     private String department;
 
-    @Lob
-    @Column(name = "face_encoding", columnDefinition = "LONGBLOB")
-    private byte[] faceEncoding;
-
     @Column(name = "face_image_path")
     private String faceImagePath;
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    @JsonIgnore
-    @OneToMany(mappedBy = "student", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Attendance> attendances = new ArrayList<>();
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
 
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
     }
 
     public String getFullName() {
@@ -0,0 +1,94 @@
+package com.attendance.pipeline;
+
+import com.attendance.model.Attendance;
+import com.attendance.model.CameraConfig;
+import lombok.Getter;
+import lombok.Setter;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A single frame travelling through the recognition pipeline. Each stage
+ * fills in its part (image, faces, recognitions) and hands the job on.
+ */
+@Getter
+@Setter
+public class FrameJob {
+
+    public enum Source {
+        CAMERA,
+        UPLOAD
+    }
+
+    private final Source source;
+    private final Priority priority;
+    private final Long classroomId;
+    private final CameraConfig cameraConfig;
+    private final long submittedAtNanos = System.nanoTime();
+    private final CompletableFuture<List<Attendance>> result = new CompletableFuture<>();
+
+    private byte[] imageBytes;
+    private Mat image;
+    private List<Rect> faces = new ArrayList<>();
+    private List<Recognition> recognitions = new ArrayList<>();
+    private long enqueuedAtNanos;
+
+    private FrameJob(Source source, Long classroomId, CameraConfig cameraConfig) {
+        this.source = source;
+        this.priority = source == Source.UPLOAD ? Priority.INTERACTIVE : Priority.BACKGROUND;
+        this.classroomId = classroomId;
+        this.cameraConfig = cameraConfig;
+    }
+
+    public static FrameJob camera(CameraConfig config) {
+        return new FrameJob(Source.CAMERA, config.getClassroom().getId(), config);
+    }
+
+    public static FrameJob upload(byte[] imageBytes, Long classroomId) {
+        FrameJob job = new FrameJob(Source.UPLOAD, classroomId, null);
+        job.setImageBytes(imageBytes);
+        return job;
+    }
+
+    /**
+     * Key used by {@link OverflowPolicy#COALESCE_LATEST}. Only camera frames
+     * coalesce; every upload is kept.
+     */
+    public Object getCoalesceKey() {
+        return source == Source.CAMERA ? classroomId : null;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    public void complete(List<Attendance> records) {
+        release();
+        result.complete(records);
+    }
+
+    public void fail(Throwable error) {
+        release();
+        result.completeExceptionally(error);
+    }
+
+    public void drop(String stage) {
+        fail(new RejectedExecutionException("Frame dropped at " + stage + " stage, pipeline is overloaded"));
+    }
+
+    /**
+     * Free the native image buffer as soon as it is no longer needed
+     */
+    public void release() {
+        imageBytes = null;
+        if (image != null) {
+            image.release();
+            image = null;
+        }
+    }
+}
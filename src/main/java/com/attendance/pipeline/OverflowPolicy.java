@@ -0,0 +1,15 @@
+package com.attendance.pipeline;
+
+/**
+ * What a pipeline stage does when a job arrives and its queue is full
+ */
+public enum OverflowPolicy {
+    /** Wait for space up to the configured block timeout, then drop the new job */
+    BLOCK,
+    /** Reject the new job */
+    DROP_NEWEST,
+    /** Evict the oldest queued job to make room */
+    DROP_OLDEST,
+    /** Replace a queued job with the same key (e.g. same camera); otherwise evict the oldest */
+    COALESCE_LATEST
+}
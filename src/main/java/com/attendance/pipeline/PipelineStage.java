@@ -0,0 +1,314 @@
+package com.attendance.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One stage of the recognition pipeline: a bounded queue per priority lane,
+ * drained by a fixed pool of worker threads. Workers always take interactive
+ * jobs first, and a number of reserved workers only ever serve the
+ * interactive lane. When a lane is full the configured {@link OverflowPolicy}
+ * decides whether to wait, drop or coalesce.
+ */
+@Slf4j
+public class PipelineStage {
+
+    /**
+     * Work done by a stage. Returns true to hand the job to the next stage,
+     * false if the job has been completed here.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        boolean process(FrameJob job) throws Exception;
+    }
+
+    /**
+     * Point-in-time view of a stage's queues and latency
+     */
+    public record Stats(String stage, int capacity, int workers, int reservedWorkers, int busy,
+            List<LaneStats> lanes) {
+    }
+
+    /**
+     * Queue depth and latency of one priority lane within a stage
+     */
+    public record LaneStats(Priority lane, int queued, long accepted, long completed, long dropped,
+            long failed, double avgWaitMs, double avgServiceMs, double maxServiceMs) {
+    }
+
+    private final String name;
+    private final int capacity;
+    private final int workers;
+    private final int reservedWorkers;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutMs;
+    private final Handler handler;
+    private PipelineStage next;
+
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private ExecutorService executor;
+    private volatile boolean running;
+    private final AtomicInteger busy = new AtomicInteger();
+
+    public PipelineStage(String name, int capacity, int workers, int reservedWorkers,
+            OverflowPolicy policy, long blockTimeoutMs, Handler handler) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.workers = Math.max(1, workers);
+        // Keep at least one worker for the background lane
+        this.reservedWorkers = Math.max(0, Math.min(reservedWorkers, this.workers - 1));
+        this.policy = policy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.handler = handler;
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] = new Lane(priority);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setNext(PipelineStage next) {
+        this.next = next;
+    }
+
+    public void start() {
+        running = true;
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "pipeline-" + name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            boolean interactiveOnly = i < reservedWorkers;
+            executor.execute(() -> runWorker(interactiveOnly));
+        }
+        log.info("Started pipeline stage '{}' with {} worker(s) ({} reserved for interactive), "
+                + "capacity {} per lane, policy {}", name, workers, reservedWorkers, capacity, policy);
+    }
+
+    public void shutdown() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        lock.lock();
+        try {
+            for (Lane lane : lanes) {
+                FrameJob job;
+                while ((job = lane.queue.poll()) != null) {
+                    job.fail(new IllegalStateException("Recognition pipeline is shutting down"));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue a job in its priority lane, applying the overflow policy if full
+     *
+     * @param job Frame job
+     * @return true if the job was queued, false if it was dropped
+     */
+    public boolean offer(FrameJob job) {
+        if (!running) {
+            job.fail(new IllegalStateException("Recognition pipeline is not running"));
+            return false;
+        }
+
+        Lane lane = lanes[job.getPriority().ordinal()];
+        lock.lock();
+        try {
+            if (policy == OverflowPolicy.COALESCE_LATEST && replaceQueued(lane, job)) {
+                return true;
+            }
+
+            if (lane.queue.size() >= capacity && !makeRoom(lane)) {
+                lane.dropped.increment();
+                job.drop(name);
+                return false;
+            }
+
+            enqueue(lane, job);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lane.dropped.increment();
+            job.drop(name);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean replaceQueued(Lane lane, FrameJob job) {
+        Object key = job.getCoalesceKey();
+        if (key == null) {
+            return false;
+        }
+
+        Iterator<FrameJob> it = lane.queue.iterator();
+        while (it.hasNext()) {
+            FrameJob queued = it.next();
+            if (Objects.equals(key, queued.getCoalesceKey())) {
+                it.remove();
+                lane.dropped.increment();
+                queued.drop(name);
+                enqueue(lane, job);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean makeRoom(Lane lane) throws InterruptedException {
+        switch (policy) {
+            case DROP_OLDEST, COALESCE_LATEST -> {
+                FrameJob oldest = lane.queue.poll();
+                if (oldest != null) {
+                    lane.dropped.increment();
+                    oldest.drop(name);
+                }
+                return true;
+            }
+            case BLOCK -> {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+                while (lane.queue.size() >= capacity) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = notFull.awaitNanos(remaining);
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private void enqueue(Lane lane, FrameJob job) {
+        job.setEnqueuedAtNanos(System.nanoTime());
+        lane.queue.addLast(job);
+        lane.accepted.increment();
+        // Reserved workers ignore the background lane, so wake everyone
+        notEmpty.signalAll();
+    }
+
+    private FrameJob take(boolean interactiveOnly) throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                FrameJob job = lanes[Priority.INTERACTIVE.ordinal()].queue.pollFirst();
+                if (job == null && !interactiveOnly) {
+                    job = lanes[Priority.BACKGROUND.ordinal()].queue.pollFirst();
+                }
+                if (job != null) {
+                    notFull.signalAll();
+                    return job;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker(boolean interactiveOnly) {
+        while (running) {
+            FrameJob job;
+            try {
+                job = take(interactiveOnly);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Lane lane = lanes[job.getPriority().ordinal()];
+            long start = System.nanoTime();
+            lane.waitNanos.add(start - job.getEnqueuedAtNanos());
+            busy.incrementAndGet();
+            try {
+                boolean forward = handler.process(job);
+                lane.completed.increment();
+                if (forward && !job.isDone()) {
+                    if (next != null) {
+                        next.offer(job);
+                    } else {
+                        job.complete(List.of());
+                    }
+                }
+            } catch (Exception e) {
+                lane.failed.increment();
+                log.error("Pipeline stage '{}' failed for classroom {}", name, job.getClassroomId(), e);
+                job.fail(e);
+            } finally {
+                busy.decrementAndGet();
+                long elapsed = System.nanoTime() - start;
+                lane.serviceNanos.add(elapsed);
+                lane.maxServiceNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(name, capacity, workers, reservedWorkers, busy.get(),
+                    Arrays.stream(lanes).map(Lane::getStats).toList());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static double average(long totalNanos, long count) {
+        return count > 0 ? totalNanos / 1_000_000.0 / count : 0.0;
+    }
+
+    /**
+     * Queue and counters for one priority lane. Guarded by the stage lock
+     * except for the counters, which are updated lock-free by workers.
+     */
+    private static final class Lane {
+        private final Priority priority;
+        private final Deque<FrameJob> queue = new ArrayDeque<>();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder serviceNanos = new LongAdder();
+        private final AtomicLong maxServiceNanos = new AtomicLong();
+
+        private Lane(Priority priority) {
+            this.priority = priority;
+        }
+
+        private LaneStats getStats() {
+            long dequeued = completed.sum() + failed.sum();
+            return new LaneStats(priority, queue.size(), accepted.sum(), completed.sum(), dropped.sum(),
+                    failed.sum(), average(waitNanos.sum(), dequeued), average(serviceNanos.sum(), dequeued),
+                    maxServiceNanos.get() / 1_000_000.0);
+        }
+    }
+}
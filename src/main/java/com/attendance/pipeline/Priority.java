@@ -0,0 +1,10 @@
+package com.attendance.pipeline;
+
+/**
+ * Priority class of recognition work. Interactive requests (uploads,
+ * registrations) are served ahead of background camera snapshots.
+ */
+public enum Priority {
+    INTERACTIVE,
+    BACKGROUND
+}
@@ -0,0 +1,9 @@
+package com.attendance.pipeline;
+
+import com.attendance.model.Student;
+
+/**
+ * A face in a frame matched to a registered student
+ */
+public record Recognition(Student student, double confidence) {
+}
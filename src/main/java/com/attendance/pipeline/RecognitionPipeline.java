@@ -0,0 +1,302 @@
+package com.attendance.pipeline;
+
+import com.attendance.model.Attendance;
+import com.attendance.model.CameraConfig;
+import com.attendance.model.Student;
+import com.attendance.repository.DetectionEventRepository.Detection;
+import com.attendance.service.AttendanceService;
+import com.attendance.service.CameraService;
+import com.attendance.service.ClassroomConfigCache;
+import com.attendance.service.DetectionEventBuffer;
+import com.attendance.service.DetectionEventService;
+import com.attendance.service.FaceGallery;
+import com.attendance.service.FaceRecognitionService;
+import com.attendance.service.PresenceRoster;
+import com.attendance.util.FaceDetector;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Face recognition pipeline split into capture, detection, encoding and
+ * persistence stages. Stages are connected by bounded queues, each with its
+ * own worker pool, so a burst of frames degrades into dropped or coalesced
+ * frames instead of piling up threads. Uploads travel in the interactive lane
+ * and are served ahead of scheduled camera snapshots.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecognitionPipeline {
+
+    private final CameraService cameraService;
+    private final FaceDetector faceDetector;
+    private final FaceRecognitionService faceRecognitionService;
+    private final FaceGallery faceGallery;
+    private final ClassroomConfigCache classroomConfigCache;
+    private final AttendanceService attendanceService;
+    private final DetectionEventBuffer detectionEventBuffer;
+    private final DetectionEventService detectionEventService;
+    private final PresenceRoster presenceRoster;
+    private final Environment environment;
+
+    /**
+     * Pipeline-wide view of queue depth and latency
+     */
+    public record PipelineStats(List<PipelineStage.Stats> stages, List<LaneLatency> lanes) {
+    }
+
+    /**
+     * End-to-end latency of one priority lane, from submission to result
+     */
+    public record LaneLatency(Priority lane, long inFlight, long finished, double avgEndToEndMs,
+            double maxEndToEndMs) {
+    }
+
+    private final List<PipelineStage> stages = new ArrayList<>();
+    private PipelineStage captureStage;
+    private PipelineStage detectionStage;
+
+    private final Map<Priority, LaneCounters> laneCounters = new EnumMap<>(Priority.class);
+    private long uploadTimeoutSeconds;
+
+    @PostConstruct
+    public void start() {
+        long blockTimeoutMs = environment.getProperty("pipeline.block-timeout-ms", Long.class, 2000L);
+        uploadTimeoutSeconds = environment.getProperty("pipeline.upload-timeout-seconds", Long.class, 60L);
+        for (Priority priority : Priority.values()) {
+            laneCounters.put(priority, new LaneCounters());
+        }
+
+        captureStage = createStage("capture", 2, 0, 16, OverflowPolicy.COALESCE_LATEST, blockTimeoutMs,
+                this::capture);
+        detectionStage = createStage("detection", 1, 0, 16, OverflowPolicy.COALESCE_LATEST, blockTimeoutMs,
+                this::detect);
+        PipelineStage encodingStage = createStage("encoding", 4, 1, 32, OverflowPolicy.BLOCK, blockTimeoutMs,
+                this::encodeAndMatch);
+        PipelineStage persistenceStage = createStage("persistence", 1, 0, 64, OverflowPolicy.BLOCK,
+                blockTimeoutMs, this::persist);
+
+        captureStage.setNext(detectionStage);
+        detectionStage.setNext(encodingStage);
+        encodingStage.setNext(persistenceStage);
+
+        stages.forEach(PipelineStage::start);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stages.forEach(PipelineStage::shutdown);
+    }
+
+    private PipelineStage createStage(String name, int defaultWorkers, int defaultReserved, int defaultCapacity,
+            OverflowPolicy defaultPolicy, long blockTimeoutMs, PipelineStage.Handler handler) {
+        String prefix = "pipeline." + name + ".";
+        PipelineStage stage = new PipelineStage(name,
+                environment.getProperty(prefix + "queue-capacity", Integer.class, defaultCapacity),
+                environment.getProperty(prefix + "workers", Integer.class, defaultWorkers),
+                environment.getProperty(prefix + "reserved-interactive-workers", Integer.class, defaultReserved),
+                environment.getProperty(prefix + "policy", OverflowPolicy.class, defaultPolicy),
+                blockTimeoutMs, handler);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Queue a scheduled camera snapshot. Returns immediately; a newer snapshot
+     * for the same camera replaces one still waiting in the queue.
+     *
+     * @param config Camera configuration
+     * @return Future completed with the attendance records marked for the frame
+     */
+    public CompletableFuture<List<Attendance>> submitCapture(CameraConfig config) {
+        FrameJob job = track(FrameJob.camera(config));
+        captureStage.offer(job);
+        return job.getResult();
+    }
+
+    /**
+     * Run an uploaded image through the pipeline and wait for the result
+     *
+     * @param imageBytes  Encoded image
+     * @param classroomId Classroom ID
+     * @return Attendance records marked for the image
+     * @throws IllegalArgumentException   if the classroom or image is invalid
+     * @throws RejectedExecutionException if the pipeline is overloaded or times out
+     */
+    public List<Attendance> processUpload(byte[] imageBytes, Long classroomId) {
+        // The classroom is validated on a pipeline thread: touching the database
+        // here would pin this request's connection while it waits for the result
+        FrameJob job = track(FrameJob.upload(imageBytes, classroomId));
+        detectionStage.offer(job);
+
+        try {
+            return job.getResult().get(uploadTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Recognition failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RejectedExecutionException("Timed out waiting for recognition result");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for recognition result");
+        }
+    }
+
+    public PipelineStats getStats() {
+        List<LaneLatency> lanes = laneCounters.entrySet().stream()
+                .map(e -> e.getValue().toLatency(e.getKey()))
+                .toList();
+        return new PipelineStats(stages.stream().map(PipelineStage::getStats).toList(), lanes);
+    }
+
+    private FrameJob track(FrameJob job) {
+        LaneCounters counters = laneCounters.get(job.getPriority());
+        counters.inFlight.incrementAndGet();
+        job.getResult().whenComplete((records, error) -> {
+            long elapsed = System.nanoTime() - job.getSubmittedAtNanos();
+            counters.inFlight.decrementAndGet();
+            counters.finished.increment();
+            counters.endToEndNanos.add(elapsed);
+            counters.maxEndToEndNanos.accumulateAndGet(elapsed, Math::max);
+        });
+        return job;
+    }
+
+    private boolean capture(FrameJob job) {
+        Mat frame = cameraService.captureFrame(job.getCameraConfig());
+        if (frame == null) {
+            job.complete(List.of());
+            return false;
+        }
+        job.setImage(frame);
+        return true;
+    }
+
+    private boolean detect(FrameJob job) {
+        if (job.getSource() == FrameJob.Source.UPLOAD && !classroomConfigCache.classroomExists(job.getClassroomId())) {
+            throw new IllegalArgumentException("Classroom not found with id: " + job.getClassroomId());
+        }
+
+        if (job.getImage() == null) {
+            job.setImage(faceDetector.byteArrayToMat(job.getImageBytes()));
+            job.setImageBytes(null);
+        }
+
+        if (job.getImage().empty()) {
+            throw new IllegalArgumentException("Invalid image data");
+        }
+
+        if (job.getSource() == FrameJob.Source.CAMERA) {
+            // Counted once analysed: a frame coalesced away before this stage was never a chance to be seen
+            detectionEventService.recordSnapshot(job.getClassroomId());
+        }
+
+        List<Rect> faces = faceRecognitionService.detectFaces(job.getImage());
+        log.info("Detected {} face(s) in {} frame", faces.size(), job.getSource().name().toLowerCase());
+        if (faces.isEmpty()) {
+            job.complete(List.of());
+            return false;
+        }
+        job.setFaces(faces);
+        return true;
+    }
+
+    private boolean encodeAndMatch(FrameJob job) {
+        FaceGallery.Snapshot gallery = faceGallery.get();
+        List<byte[]> storedEncodings = gallery.encodings();
+
+        double threshold = classroomConfigCache.getRecognitionThreshold(job.getClassroomId());
+
+        List<Recognition> recognitions = new ArrayList<>();
+        for (Rect faceRect : job.getFaces()) {
+            Mat faceImage = faceDetector.extractFace(job.getImage(), faceRect);
+            byte[] faceEncoding;
+            try {
+                faceEncoding = faceRecognitionService.extractFaceEncoding(faceImage, job.getPriority());
+            } finally {
+                faceImage.release();
+            }
+
+            int matchIndex = faceRecognitionService.recognizeFace(faceEncoding, storedEncodings, threshold);
+            if (matchIndex >= 0) {
+                Student recognizedStudent = gallery.students().get(matchIndex);
+                double confidence = faceRecognitionService.calculateConfidence(
+                        faceEncoding, storedEncodings.get(matchIndex));
+                recognitions.add(new Recognition(recognizedStudent, confidence));
+            }
+        }
+
+        // The image is not needed past this point
+        job.release();
+
+        if (recognitions.isEmpty()) {
+            job.complete(List.of());
+            return false;
+        }
+        job.setRecognitions(recognitions);
+        return true;
+    }
+
+    private boolean persist(FrameJob job) {
+        for (Recognition recognition : job.getRecognitions()) {
+            log.info("Recognized student: {} with confidence: {}",
+                    recognition.student().getStudentId(), recognition.confidence());
+        }
+
+        // Live views see the sighting now; the status follows once it is rolled up
+        presenceRoster.recordSightings(job.getClassroomId(), job.getRecognitions());
+
+        if (job.getPriority() == Priority.BACKGROUND) {
+            // Camera snapshots are write-behind: buffered, then appended to the event log in batches
+            detectionEventBuffer.record(job.getClassroomId(), job.getRecognitions());
+            log.info("Buffered {} detection(s) from camera stream for {}",
+                    job.getRecognitions().size(), job.getCameraConfig().getClassroom().getCourseCode());
+            job.complete(List.of());
+            return false;
+        }
+
+        // Uploads wait for their result, so their events are applied as they are appended
+        List<Detection> detections = DetectionEventService.toDetections(job.getClassroomId(),
+                job.getRecognitions());
+        detectionEventService.appendAndApply(detections);
+
+        List<Attendance> attendanceRecords = attendanceService.getAttendanceForStudents(job.getClassroomId(),
+                detections.get(0).date(), detections.stream().map(Detection::studentId).toList());
+        job.complete(attendanceRecords);
+        return false;
+    }
+
+    private static final class LaneCounters {
+        private final AtomicLong inFlight = new AtomicLong();
+        private final LongAdder finished = new LongAdder();
+        private final LongAdder endToEndNanos = new LongAdder();
+        private final AtomicLong maxEndToEndNanos = new AtomicLong();
+
+        private LaneLatency toLatency(Priority lane) {
+            long count = finished.sum();
+            return new LaneLatency(lane, inFlight.get(), count,
+                    count > 0 ? endToEndNanos.sum() / 1_000_000.0 / count : 0.0,
+                    maxEndToEndNanos.get() / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.attendance.repository;
+
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.ArchivedAttendance;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for ArchivedAttendance entity. The read queries
+ * return the same shapes as their namesakes in {@link AttendanceRepository}
+ * so results of both tables can be concatenated.
+ */
+@Repository
+public interface ArchivedAttendanceRepository extends JpaRepository<ArchivedAttendance, Long> {
+
+    /**
+     * {@link AttendanceRepository#ROWS} over the archive
+     */
+    String ROWS = AttendanceRepository.ROW_SELECT + "FROM ArchivedAttendance a JOIN a.student s JOIN a.classroom c ";
+
+    @Query(ROWS + "WHERE a.attendanceDate = :date AND c.id = :classroomId ORDER BY a.checkInTime")
+    List<AttendanceRowDTO> findRowsByDateAndClassroom(@Param("date") LocalDate date,
+            @Param("classroomId") Long classroomId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(ROWS + "WHERE c.id = :classroomId AND a.attendanceDate BETWEEN :from AND :to "
+            + "ORDER BY a.attendanceDate, a.checkInTime")
+    Stream<AttendanceRowDTO> streamRowsByClassroomAndDateRange(@Param("classroomId") Long classroomId,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Cheap fingerprint of the archived records of some classrooms over a
+     * date range. Archived records are only ever deleted, which changes the
+     * count.
+     *
+     * @return One row of [count, max id, detections, present, late]
+     */
+    @Query("SELECT COUNT(a), COALESCE(MAX(a.id), 0), COALESCE(SUM(a.detectionCount), 0), "
+            + "COALESCE(SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN a.status = 'LATE' THEN 1 ELSE 0 END), 0) "
+            + "FROM ArchivedAttendance a WHERE a.classroom.id IN :classroomIds "
+            + "AND a.attendanceDate BETWEEN :from AND :to")
+    List<Object[]> fingerprint(@Param("classroomIds") Collection<Long> classroomIds,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT a.classroom.id, a.student.id, a.attendanceDate, a.status FROM ArchivedAttendance a "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "ORDER BY a.classroom.id, a.attendanceDate")
+    Stream<Object[]> streamStatusByDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId);
+
+    @Query("SELECT a.student.id, a.status, COUNT(a) FROM ArchivedAttendance a WHERE a.student.id IN :studentIds "
+            + "GROUP BY a.student.id, a.status")
+    List<Object[]> countByStatusForStudents(@Param("studentIds") Collection<Long> studentIds);
+
+    @Query("SELECT a.student.id, a.status, COUNT(a) FROM ArchivedAttendance a WHERE a.classroom.id = :classroomId "
+            + "GROUP BY a.student.id, a.status")
+    List<Object[]> countByStatusForClassroom(@Param("classroomId") Long classroomId);
+
+    @Query("SELECT a.attendanceDate, c.id, c.courseCode, a.status, COUNT(a) "
+            + "FROM ArchivedAttendance a JOIN a.classroom c JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR c.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, c.id, c.courseCode, a.status")
+    List<Object[]> countDailyByClassroom(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
+
+    @Query("SELECT a.attendanceDate, s.department, s.department, a.status, COUNT(a) "
+            + "FROM ArchivedAttendance a JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, s.department, a.status")
+    List<Object[]> countDailyByDepartment(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
+
+    @Query("SELECT a.attendanceDate, s.id, s.studentId, a.status, COUNT(a) "
+            + "FROM ArchivedAttendance a JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, s.id, s.studentId, a.status")
+    List<Object[]> countDailyByStudent(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
+}
@@ -0,0 +1,20 @@
+package com.attendance.repository;
+
+import com.attendance.model.ArchivedTerm;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for ArchivedTerm entity
+ */
+@Repository
+public interface ArchivedTermRepository extends JpaRepository<ArchivedTerm, Long> {
+
+    List<ArchivedTerm> findAllByOrderByTermStartAsc();
+
+    Optional<ArchivedTerm> findByTermStart(LocalDate termStart);
+}
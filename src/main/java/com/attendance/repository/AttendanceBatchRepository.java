@@ -0,0 +1,273 @@
+package com.attendance.repository;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writer for attendance rows. Upserts a whole set of detections in
+ * one statement batch and increments detection_count in SQL, so concurrent
+ * writers never lose an update and no row has to be read first. Statuses
+ * stay provisional until the lecture is finalized, which settles all of
+ * its rows with one statement.
+ * Uses MERGE on H2 and INSERT ... ON DUPLICATE KEY UPDATE on MySQL.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class AttendanceBatchRepository {
+
+    /**
+     * Detections of one student in one classroom on one day
+     */
+    public record AttendanceDelta(Long studentId, Long classroomId, LocalDate date, LocalTime firstSeen,
+            double confidence, double maxConfidence, int detections) {
+    }
+
+    /**
+     * Detection count and status of an existing row
+     */
+    public record AttendanceState(int detections, AttendanceStatus status) {
+    }
+
+    /**
+     * Status of a record until its lecture is finalized: the student has
+     * been seen
+     */
+    public static final AttendanceStatus PROVISIONAL_STATUS = AttendanceStatus.PRESENT;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private SqlDialect dialect;
+
+    private static final String H2_UPSERT = """
+            MERGE INTO attendance t
+            USING (SELECT CAST(? AS BIGINT) AS student_id, CAST(? AS BIGINT) AS classroom_id,
+                          CAST(? AS DATE) AS attendance_date, CAST(? AS TIME) AS check_in_time,
+                          CAST(? AS DOUBLE PRECISION) AS confidence_score,
+                          CAST(? AS DOUBLE PRECISION) AS max_confidence_score, CAST(? AS INT) AS detections
+                   FROM students WHERE id = ?) s
+            ON t.student_id = s.student_id AND t.classroom_id = s.classroom_id
+                AND t.attendance_date = s.attendance_date
+            WHEN MATCHED THEN UPDATE SET
+                detection_count = COALESCE(t.detection_count, 0) + s.detections,
+                confidence_score = s.confidence_score,
+                max_confidence_score = GREATEST(COALESCE(t.max_confidence_score, 0), s.max_confidence_score),
+                check_in_time = LEAST(t.check_in_time, s.check_in_time)
+            WHEN NOT MATCHED THEN INSERT
+                (student_id, classroom_id, attendance_date, check_in_time, status, confidence_score,
+                 max_confidence_score, detection_count, created_at)
+                VALUES (s.student_id, s.classroom_id, s.attendance_date, s.check_in_time, '%s',
+                        s.confidence_score, s.max_confidence_score, s.detections, CURRENT_TIMESTAMP)
+            """.formatted(PROVISIONAL_STATUS.name());
+
+    private static final String MYSQL_UPSERT = """
+            INSERT INTO attendance
+                (student_id, classroom_id, attendance_date, check_in_time, status, confidence_score,
+                 max_confidence_score, detection_count, created_at)
+            SELECT ?, ?, ?, ?, '%s', ?, ?, ?, CURRENT_TIMESTAMP FROM students WHERE id = ?
+            ON DUPLICATE KEY UPDATE
+                detection_count = COALESCE(detection_count, 0) + VALUES(detection_count),
+                confidence_score = VALUES(confidence_score),
+                max_confidence_score = GREATEST(COALESCE(max_confidence_score, 0), VALUES(max_confidence_score)),
+                check_in_time = LEAST(check_in_time, VALUES(check_in_time))
+            """.formatted(PROVISIONAL_STATUS.name());
+
+    private static final String FINALIZE_STATUSES = "UPDATE attendance SET status = "
+            + statusCase("COALESCE(detection_count, 0)", "?")
+            + " WHERE classroom_id = ? AND attendance_date = ?";
+
+    // Students with a row in the classroom since a date but none on the lecture's day
+    private static final String ABSENTEES = "FROM attendance a WHERE a.classroom_id = ? "
+            + "AND a.attendance_date >= ? AND a.attendance_date < ? AND NOT EXISTS (SELECT 1 FROM attendance t "
+            + "WHERE t.student_id = a.student_id AND t.classroom_id = a.classroom_id AND t.attendance_date = ?)";
+
+    private static final String INSERT_ABSENT = """
+            INSERT INTO attendance
+                (student_id, classroom_id, attendance_date, check_in_time, status, confidence_score,
+                 max_confidence_score, detection_count, created_at)
+            SELECT DISTINCT a.student_id, a.classroom_id, CAST(? AS DATE), CAST(? AS TIME), 'ABSENT', 0, 0, 0,
+                   CURRENT_TIMESTAMP
+            """ + ABSENTEES;
+
+    @PostConstruct
+    void detectDialect() {
+        dialect = SqlDialect.of(jdbcTemplate);
+        log.info("Attendance batch upserts using {} syntax", dialect);
+    }
+
+    /**
+     * Upsert all deltas in one JDBC batch. Existing rows only have their
+     * counts and confidence moved; new rows get the provisional status.
+     * The source row is selected from students, so a delta of a deleted
+     * student writes nothing instead of failing the batch on its foreign key.
+     *
+     * @param deltas Detections to apply
+     */
+    public void upsert(List<AttendanceDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        String sql = dialect == SqlDialect.MYSQL ? MYSQL_UPSERT : H2_UPSERT;
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AttendanceDelta delta = deltas.get(i);
+                ps.setLong(1, delta.studentId());
+                ps.setLong(2, delta.classroomId());
+                ps.setDate(3, Date.valueOf(delta.date()));
+                ps.setTime(4, Time.valueOf(delta.firstSeen()));
+                ps.setDouble(5, delta.confidence());
+                ps.setDouble(6, delta.maxConfidence());
+                ps.setInt(7, delta.detections());
+                ps.setLong(8, delta.studentId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+        log.debug("Upserted {} attendance row(s) in one batch", deltas.size());
+    }
+
+    /**
+     * Read the current count and status of the given students' rows, so the
+     * caller can tell which statuses an upsert will change
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @param studentIds  Student IDs
+     * @return State per student ID; students without a row are absent
+     */
+    public Map<Long, AttendanceState> findStates(Long classroomId, LocalDate date, Collection<Long> studentIds) {
+        Map<Long, AttendanceState> states = new HashMap<>();
+        if (studentIds.isEmpty()) {
+            return states;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(studentIds.size(), "?"));
+        List<Object> args = new ArrayList<>(studentIds.size() + 2);
+        args.add(classroomId);
+        args.add(Date.valueOf(date));
+        args.addAll(studentIds);
+
+        jdbcTemplate.query("SELECT student_id, detection_count, status FROM attendance "
+                + "WHERE classroom_id = ? AND attendance_date = ? AND student_id IN (" + placeholders + ")",
+                rs -> {
+                    states.put(rs.getLong("student_id"), new AttendanceState(rs.getInt("detection_count"),
+                            AttendanceStatus.valueOf(rs.getString("status"))));
+                }, args.toArray());
+        return states;
+    }
+
+    /**
+     * Read the count and status of every row of one lecture
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @return State per student ID
+     */
+    public Map<Long, AttendanceState> findStates(Long classroomId, LocalDate date) {
+        Map<Long, AttendanceState> states = new HashMap<>();
+        jdbcTemplate.query("SELECT student_id, detection_count, status FROM attendance "
+                + "WHERE classroom_id = ? AND attendance_date = ?",
+                rs -> {
+                    states.put(rs.getLong("student_id"), new AttendanceState(rs.getInt("detection_count"),
+                            AttendanceStatus.valueOf(rs.getString("status"))));
+                }, classroomId, Date.valueOf(date));
+        return states;
+    }
+
+    /**
+     * Give every row of one lecture its final status, in one statement
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @param snapshots   Snapshots the detections are measured against
+     * @return Number of rows updated
+     */
+    public int finalizeStatuses(Long classroomId, LocalDate date, int snapshots) {
+        return jdbcTemplate.update(FINALIZE_STATUSES, snapshots, snapshots, classroomId, Date.valueOf(date));
+    }
+
+    /**
+     * Students of a classroom's roster without a row on a day. The roster is
+     * everyone with a row in the classroom since a date.
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @param since       First day of the roster
+     * @return Student IDs
+     */
+    public List<Long> findAbsentees(Long classroomId, LocalDate date, LocalDate since) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT a.student_id " + ABSENTEES, Long.class,
+                classroomId, Date.valueOf(since), Date.valueOf(date), Date.valueOf(date));
+    }
+
+    /**
+     * Insert an ABSENT row for every student {@link #findAbsentees} returns,
+     * in one statement
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @param since       First day of the roster
+     * @param recordedAt  Check-in time stored on the rows
+     * @return Number of rows inserted
+     */
+    public int insertAbsent(Long classroomId, LocalDate date, LocalDate since, LocalTime recordedAt) {
+        return jdbcTemplate.update(INSERT_ABSENT, Date.valueOf(date), Time.valueOf(recordedAt),
+                classroomId, Date.valueOf(since), Date.valueOf(date), Date.valueOf(date));
+    }
+
+    /**
+     * Delete every attendance row of one day
+     *
+     * @param date Attendance date
+     * @return Number of rows deleted
+     */
+    public int deleteByDate(LocalDate date) {
+        return jdbcTemplate.update("DELETE FROM attendance WHERE attendance_date = ?", Date.valueOf(date));
+    }
+
+    /**
+     * Status rule: present at 75% of snapshots, late at 50%, absent below.
+     * {@link #statusCase} is the SQL form of the same rule.
+     *
+     * @param detections     Times the student was detected
+     * @param totalSnapshots Snapshots taken in the lecture
+     * @return Attendance status
+     */
+    public static AttendanceStatus statusFor(int detections, int totalSnapshots) {
+        if (detections * 4 >= totalSnapshots * 3) {
+            return AttendanceStatus.PRESENT;
+        } else if (detections * 2 >= totalSnapshots) {
+            return AttendanceStatus.LATE;
+        }
+        return AttendanceStatus.ABSENT;
+    }
+
+    private static String statusCase(String count, String snapshots) {
+        return "CASE WHEN (" + count + ") * 4 >= (" + snapshots + ") * 3 THEN 'PRESENT'"
+                + " WHEN (" + count + ") * 2 >= (" + snapshots + ") THEN 'LATE'"
+                + " ELSE 'ABSENT' END";
+    }
+}
@@ -1,14 +1,20 @@
 package com.attendance.repository;
 
+import com.attendance.dto.AttendanceRowDTO;
 import com.attendance.model.Attendance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for Attendance entity
@@ -16,22 +22,146 @@ import java.util.Optional;
 @Repository
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
 
-    List<Attendance> findByAttendanceDateAndClassroomId(LocalDate date, Long classroomId);
+    /**
+     * Select list of the flat row projection, over a record aliased a with
+     * its student joined as s and classroom as c. Shared with
+     * {@link ArchivedAttendanceRepository}.
+     */
+    String ROW_SELECT = "SELECT new com.attendance.dto.AttendanceRowDTO(a.id, s.studentId, "
+            + "CONCAT(s.firstName, ' ', s.lastName), s.email, s.department, c.courseCode, a.attendanceDate, "
+            + "a.checkInTime, a.status, a.confidenceScore, a.detectionCount) ";
 
-    List<Attendance> findByStudentIdAndAttendanceDate(Long studentId, LocalDate date);
+    /**
+     * Flat row projection with student and classroom joined, so a listing
+     * or export is one statement however many rows it returns
+     */
+    String ROWS = ROW_SELECT + "FROM Attendance a JOIN a.student s JOIN a.classroom c ";
+
+    /**
+     * Flat rows of one classroom and day, student and classroom joined in the same query
+     */
+    @Query(ROWS + "WHERE a.attendanceDate = :date AND c.id = :classroomId ORDER BY a.checkInTime")
+    List<AttendanceRowDTO> findRowsByDateAndClassroom(@Param("date") LocalDate date,
+            @Param("classroomId") Long classroomId);
+
+    /**
+     * Same rows as {@link #findRowsByDateAndClassroom}, read through a cursor
+     * for exports. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(ROWS + "WHERE a.attendanceDate = :date AND c.id = :classroomId ORDER BY a.checkInTime")
+    Stream<AttendanceRowDTO> streamRowsByDateAndClassroom(@Param("date") LocalDate date,
+            @Param("classroomId") Long classroomId);
+
+    /**
+     * Rows of one classroom over a date range, read through a cursor. Must be
+     * consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(ROWS + "WHERE c.id = :classroomId AND a.attendanceDate BETWEEN :from AND :to "
+            + "ORDER BY a.attendanceDate, a.checkInTime")
+    Stream<AttendanceRowDTO> streamRowsByClassroomAndDateRange(@Param("classroomId") Long classroomId,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Rows of [classroom id, student id, date, AttendanceStatus] over a date
+     * range, optionally for one classroom, ordered by classroom and date.
+     * Read through a cursor; must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT a.classroom.id, a.student.id, a.attendanceDate, a.status FROM Attendance a "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "ORDER BY a.classroom.id, a.attendanceDate")
+    Stream<Object[]> streamStatusByDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId);
+
+    /**
+     * Cheap fingerprint of the records of some classrooms over a date range.
+     * Every write adds detections or records, and a replaced day gets new
+     * ids, so any change to the data changes at least one of the values.
+     *
+     * @return One row of [count, max id, detections, present, late]
+     */
+    @Query("SELECT COUNT(a), COALESCE(MAX(a.id), 0), COALESCE(SUM(a.detectionCount), 0), "
+            + "COALESCE(SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN a.status = 'LATE' THEN 1 ELSE 0 END), 0) "
+            + "FROM Attendance a WHERE a.classroom.id IN :classroomIds "
+            + "AND a.attendanceDate BETWEEN :from AND :to")
+    List<Object[]> fingerprint(@Param("classroomIds") Collection<Long> classroomIds,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
 
     Optional<Attendance> findByStudentIdAndClassroomIdAndAttendanceDate(
             Long studentId, Long classroomId, LocalDate date);
 
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.attendanceDate = :date")
-    long countByDate(@Param("date") LocalDate date);
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student JOIN FETCH a.classroom "
+            + "WHERE a.classroom.id = :classroomId AND a.attendanceDate = :date AND a.student.id IN :studentIds")
+    List<Attendance> findWithDetailsForStudents(@Param("classroomId") Long classroomId,
+            @Param("date") LocalDate date, @Param("studentIds") Collection<Long> studentIds);
+
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student "
+            + "WHERE a.classroom.id = :classroomId AND a.attendanceDate = :date")
+    List<Attendance> findWithStudentByClassroomAndDate(@Param("classroomId") Long classroomId,
+            @Param("date") LocalDate date);
+
+    /**
+     * Count records per student and status, over all classrooms
+     *
+     * @return Rows of [student id, AttendanceStatus, Long]
+     */
+    @Query("SELECT a.student.id, a.status, COUNT(a) FROM Attendance a WHERE a.student.id IN :studentIds "
+            + "GROUP BY a.student.id, a.status")
+    List<Object[]> countByStatusForStudents(@Param("studentIds") Collection<Long> studentIds);
+
+    /**
+     * Count records per student and status within one classroom
+     *
+     * @return Rows of [student id, AttendanceStatus, Long]
+     */
+    @Query("SELECT a.student.id, a.status, COUNT(a) FROM Attendance a WHERE a.classroom.id = :classroomId "
+            + "GROUP BY a.student.id, a.status")
+    List<Object[]> countByStatusForClassroom(@Param("classroomId") Long classroomId);
 
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.attendanceDate = :date AND a.status = 'PRESENT'")
-    long countPresentByDate(@Param("date") LocalDate date);
+    /**
+     * Daily counts per classroom and status over a date range. Null filters
+     * are ignored.
+     *
+     * @return Rows of [LocalDate, classroom id, course code, AttendanceStatus, Long]
+     */
+    @Query("SELECT a.attendanceDate, c.id, c.courseCode, a.status, COUNT(a) "
+            + "FROM Attendance a JOIN a.classroom c JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR c.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, c.id, c.courseCode, a.status")
+    List<Object[]> countDailyByClassroom(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
 
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student.id = :studentId")
-    long countByStudentId(@Param("studentId") Long studentId);
+    /**
+     * Daily counts per department and status over a date range
+     *
+     * @return Rows of [LocalDate, department, department, AttendanceStatus, Long]
+     */
+    @Query("SELECT a.attendanceDate, s.department, s.department, a.status, COUNT(a) "
+            + "FROM Attendance a JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, s.department, a.status")
+    List<Object[]> countDailyByDepartment(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
 
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student.id = :studentId AND a.status = 'PRESENT'")
-    long countPresentByStudentId(@Param("studentId") Long studentId);
+    /**
+     * Daily counts per student and status over a date range
+     *
+     * @return Rows of [LocalDate, student id, student code, AttendanceStatus, Long]
+     */
+    @Query("SELECT a.attendanceDate, s.id, s.studentId, a.status, COUNT(a) "
+            + "FROM Attendance a JOIN a.student s "
+            + "WHERE a.attendanceDate BETWEEN :from AND :to "
+            + "AND (:classroomId IS NULL OR a.classroom.id = :classroomId) "
+            + "AND (:department IS NULL OR s.department = :department) "
+            + "GROUP BY a.attendanceDate, s.id, s.studentId, a.status")
+    List<Object[]> countDailyByStudent(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("classroomId") Long classroomId, @Param("department") String department);
 }
@@ -2,11 +2,19 @@ package com.attendance.repository;
 
 import com.attendance.model.CameraConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CameraConfigRepository extends JpaRepository<CameraConfig, Long> {
     Optional<CameraConfig> findByClassroomId(Long classroomId);
+
+    /**
+     * Load configs with their classroom so they can be used on pipeline threads
+     */
+    @Query("SELECT c FROM CameraConfig c JOIN FETCH c.classroom")
+    List<CameraConfig> findAllWithClassroom();
 }
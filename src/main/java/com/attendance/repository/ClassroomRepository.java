@@ -2,8 +2,13 @@ package com.attendance.repository;
 
 import com.attendance.model.Classroom;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -15,4 +20,16 @@ public interface ClassroomRepository extends JpaRepository<Classroom, Long> {
     Optional<Classroom> findByCourseCode(String courseCode);
     
     boolean existsByCourseCode(String courseCode);
+
+    /**
+     * @return Time of the latest classroom insert or edit, or null if unknown
+     */
+    @Query("SELECT MAX(c.updatedAt) FROM Classroom c")
+    LocalDateTime findLastUpdate();
+
+    /**
+     * @return IDs of the classrooms whose lecture ends at or before a time of day
+     */
+    @Query("SELECT c.id FROM Classroom c WHERE c.endTime <= :time")
+    List<Long> findIdsEndedBy(@Param("time") LocalTime time);
 }
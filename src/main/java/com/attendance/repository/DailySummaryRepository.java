@@ -0,0 +1,226 @@
+package com.attendance.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to daily_attendance_summary. Counts are changed by adding
+ * deltas in SQL, so concurrent writers never lose an update.
+ * Uses MERGE on H2 and INSERT ... ON DUPLICATE KEY UPDATE on MySQL.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DailySummaryRepository {
+
+    /**
+     * Counts of one classroom on one day, or a change to them
+     */
+    public record SummaryCounts(LocalDate date, Long classroomId, long total, long present, long late,
+            long absent) {
+
+        public boolean isZero() {
+            return total == 0 && present == 0 && late == 0 && absent == 0;
+        }
+    }
+
+    /**
+     * Counts of one classroom on one day, with its course code
+     */
+    public record ClassroomSummary(LocalDate date, Long classroomId, String courseCode, long total,
+            long present, long late, long absent) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private SqlDialect dialect;
+
+    private static final String H2_INCREMENT = """
+            MERGE INTO daily_attendance_summary t
+            USING (SELECT CAST(? AS DATE) AS summary_date, CAST(? AS BIGINT) AS classroom_id,
+                          CAST(? AS BIGINT) AS total, CAST(? AS BIGINT) AS present,
+                          CAST(? AS BIGINT) AS late, CAST(? AS BIGINT) AS absent) s
+            ON t.summary_date = s.summary_date AND t.classroom_id = s.classroom_id
+            WHEN MATCHED THEN UPDATE SET
+                total = t.total + s.total, present = t.present + s.present,
+                late = t.late + s.late, absent = t.absent + s.absent
+            WHEN NOT MATCHED THEN INSERT (summary_date, classroom_id, total, present, late, absent)
+                VALUES (s.summary_date, s.classroom_id, s.total, s.present, s.late, s.absent)
+            """;
+
+    private static final String MYSQL_INCREMENT = """
+            INSERT INTO daily_attendance_summary (summary_date, classroom_id, total, present, late, absent)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                total = total + VALUES(total), present = present + VALUES(present),
+                late = late + VALUES(late), absent = absent + VALUES(absent)
+            """;
+
+    // Records of archived terms count as well, so the summary of a term survives its archival
+    private static final String ALL_RECORDS = "(SELECT attendance_date, classroom_id, status FROM attendance "
+            + "UNION ALL SELECT attendance_date, classroom_id, status FROM attendance_archive) r";
+
+    private static final String COUNT_RECORDS = """
+            SELECT attendance_date, classroom_id, COUNT(*) AS total,
+                   SUM(CASE WHEN status = 'PRESENT' THEN 1 ELSE 0 END) AS present,
+                   SUM(CASE WHEN status = 'LATE' THEN 1 ELSE 0 END) AS late,
+                   SUM(CASE WHEN status = 'ABSENT' THEN 1 ELSE 0 END) AS absent
+            FROM %s WHERE attendance_date BETWEEN ? AND ?
+            GROUP BY attendance_date, classroom_id
+            """.formatted(ALL_RECORDS);
+
+    @PostConstruct
+    void detectDialect() {
+        dialect = SqlDialect.of(jdbcTemplate);
+    }
+
+    /**
+     * Add deltas to the counts, creating rows as needed, in one JDBC batch
+     *
+     * @param deltas Changes per classroom and day
+     */
+    public void increment(List<SummaryCounts> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        String sql = dialect == SqlDialect.MYSQL ? MYSQL_INCREMENT : H2_INCREMENT;
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                SummaryCounts delta = deltas.get(i);
+                ps.setDate(1, Date.valueOf(delta.date()));
+                ps.setLong(2, delta.classroomId());
+                ps.setLong(3, delta.total());
+                ps.setLong(4, delta.present());
+                ps.setLong(5, delta.late());
+                ps.setLong(6, delta.absent());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    /**
+     * Totals of one day over all classrooms
+     *
+     * @param date Day
+     * @return Counts with a null classroom; all zero if nothing was recorded
+     */
+    public SummaryCounts sumForDate(LocalDate date) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(total), 0), COALESCE(SUM(present), 0), "
+                + "COALESCE(SUM(late), 0), COALESCE(SUM(absent), 0) "
+                + "FROM daily_attendance_summary WHERE summary_date = ?",
+                (rs, i) -> new SummaryCounts(date, null, rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)),
+                Date.valueOf(date));
+    }
+
+    /**
+     * Rows of a date range with course codes, optionally for one classroom
+     *
+     * @param from        First date
+     * @param to          Last date
+     * @param classroomId Classroom ID, or null for all
+     * @return Rows ordered by date
+     */
+    public List<ClassroomSummary> findWithCourseCode(LocalDate from, LocalDate to, Long classroomId) {
+        String sql = "SELECT d.summary_date, d.classroom_id, c.course_code, d.total, d.present, d.late, d.absent "
+                + "FROM daily_attendance_summary d JOIN classrooms c ON c.id = d.classroom_id "
+                + "WHERE d.summary_date BETWEEN ? AND ?"
+                + (classroomId != null ? " AND d.classroom_id = ?" : "")
+                + " ORDER BY d.summary_date";
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (classroomId != null) {
+            args.add(classroomId);
+        }
+        return jdbcTemplate.query(sql, (rs, i) -> new ClassroomSummary(rs.getDate(1).toLocalDate(),
+                rs.getLong(2), rs.getString(3), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7)),
+                args.toArray());
+    }
+
+    /**
+     * Stored counts of a date range
+     *
+     * @return Counts keyed by date and classroom
+     */
+    public Map<Map.Entry<LocalDate, Long>, SummaryCounts> findRange(LocalDate from, LocalDate to) {
+        Map<Map.Entry<LocalDate, Long>, SummaryCounts> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT summary_date, classroom_id, total, present, late, absent "
+                + "FROM daily_attendance_summary WHERE summary_date BETWEEN ? AND ?", rs -> {
+                    SummaryCounts counts = new SummaryCounts(rs.getDate(1).toLocalDate(), rs.getLong(2),
+                            rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6));
+                    rows.put(Map.entry(counts.date(), counts.classroomId()), counts);
+                }, Date.valueOf(from), Date.valueOf(to));
+        return rows;
+    }
+
+    /**
+     * Counts of a date range taken from the attendance records themselves,
+     * archived or not
+     *
+     * @return Counts keyed by date and classroom
+     */
+    public Map<Map.Entry<LocalDate, Long>, SummaryCounts> countRecords(LocalDate from, LocalDate to) {
+        Map<Map.Entry<LocalDate, Long>, SummaryCounts> rows = new HashMap<>();
+        jdbcTemplate.query(COUNT_RECORDS, rs -> {
+            SummaryCounts counts = new SummaryCounts(rs.getDate(1).toLocalDate(), rs.getLong(2),
+                    rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6));
+            rows.put(Map.entry(counts.date(), counts.classroomId()), counts);
+        }, Date.valueOf(from), Date.valueOf(to));
+        return rows;
+    }
+
+    /**
+     * Recompute one day from the attendance records, archived or not,
+     * replacing what is stored. Must run in a transaction.
+     *
+     * @param date Day
+     * @return Number of summary rows written
+     */
+    public int rebuildDate(LocalDate date) {
+        deleteByDate(date);
+        return jdbcTemplate.update("INSERT INTO daily_attendance_summary "
+                + "(summary_date, classroom_id, total, present, late, absent) "
+                + "SELECT attendance_date, classroom_id, COUNT(*), "
+                + "SUM(CASE WHEN status = 'PRESENT' THEN 1 ELSE 0 END), "
+                + "SUM(CASE WHEN status = 'LATE' THEN 1 ELSE 0 END), "
+                + "SUM(CASE WHEN status = 'ABSENT' THEN 1 ELSE 0 END) "
+                + "FROM " + ALL_RECORDS + " WHERE attendance_date = ? GROUP BY attendance_date, classroom_id",
+                Date.valueOf(date));
+    }
+
+    public int deleteByDate(LocalDate date) {
+        return jdbcTemplate.update("DELETE FROM daily_attendance_summary WHERE summary_date = ?",
+                Date.valueOf(date));
+    }
+
+    /**
+     * @return Earliest attendance date, archived or not, or null if there are no records
+     */
+    public LocalDate findFirstAttendanceDate() {
+        Date first = jdbcTemplate.queryForObject("SELECT MIN(first_date) FROM ("
+                + "SELECT MIN(attendance_date) AS first_date FROM attendance UNION ALL "
+                + "SELECT MIN(attendance_date) FROM attendance_archive) f", Date.class);
+        return first != null ? first.toLocalDate() : null;
+    }
+
+    public boolean isEmpty() {
+        // Answered from the unique index, which leads with summary_date
+        return jdbcTemplate.queryForObject("SELECT MIN(summary_date) FROM daily_attendance_summary",
+                Date.class) == null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.attendance.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JDBC access to the append-only detection_events log and the rollup
+ * watermark. Events are inserted in large batches and never updated. Events
+ * inserted as applied are already in attendance and left out of the rollup.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DetectionEventRepository {
+
+    /**
+     * One recognition of a student in one snapshot
+     */
+    public record Detection(Long studentId, Long classroomId, LocalDate date, LocalTime seenAt,
+            double confidence) {
+    }
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final String INSERT = """
+            INSERT INTO detection_events (student_id, classroom_id, event_date, seen_at, confidence, applied)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SELECT_COLUMNS = "SELECT student_id, classroom_id, event_date, seen_at, confidence "
+            + "FROM detection_events ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Append detections, in JDBC batches of {@value #INSERT_BATCH_SIZE}
+     *
+     * @param detections Detections to append
+     */
+    public void insertAll(List<Detection> detections) {
+        insertAll(detections, false);
+    }
+
+    /**
+     * Append detections, in JDBC batches of {@value #INSERT_BATCH_SIZE}
+     *
+     * @param detections Detections to append
+     * @param applied    Whether the caller applies them to attendance itself
+     */
+    public void insertAll(List<Detection> detections, boolean applied) {
+        if (detections.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, detections, INSERT_BATCH_SIZE, (ps, detection) -> {
+            ps.setLong(1, detection.studentId());
+            ps.setLong(2, detection.classroomId());
+            ps.setDate(3, Date.valueOf(detection.date()));
+            ps.setTime(4, Time.valueOf(detection.seenAt()));
+            ps.setDouble(5, detection.confidence());
+            ps.setBoolean(6, applied);
+        });
+    }
+
+    /**
+     * @return Highest event ID written so far, 0 if the log is empty
+     */
+    public long findMaxId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM detection_events", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    /**
+     * Stream events not yet applied with afterId &lt; id &lt;= upToId in ID order
+     *
+     * @param afterId  Exclusive lower bound
+     * @param upToId   Inclusive upper bound
+     * @param consumer Receives each event
+     */
+    public void forEachInRange(long afterId, long upToId, Consumer<Detection> consumer) {
+        jdbcTemplate.query(SELECT_COLUMNS + "WHERE id > ? AND id <= ? AND applied = FALSE ORDER BY id",
+                rs -> {
+                    consumer.accept(mapRow(rs));
+                }, afterId, upToId);
+    }
+
+    /**
+     * Stream all events of one day up to an event ID, and applied events
+     * past it, in ID order
+     *
+     * @param date     Event date
+     * @param upToId   Inclusive upper bound
+     * @param consumer Receives each event
+     */
+    public void forEachOnDate(LocalDate date, long upToId, Consumer<Detection> consumer) {
+        jdbcTemplate.query(SELECT_COLUMNS + "WHERE event_date = ? AND (id <= ? OR applied = TRUE) ORDER BY id",
+                rs -> {
+                    consumer.accept(mapRow(rs));
+                }, Date.valueOf(date), upToId);
+    }
+
+    /**
+     * Read a watermark and lock its row until the surrounding transaction
+     * ends, creating it at 0 on first use
+     *
+     * @param name Watermark name
+     * @return Last event ID already rolled up
+     */
+    public long lockWatermark(String name) {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT last_event_id FROM rollup_watermarks WHERE name = ? FOR UPDATE", Long.class, name);
+        if (!current.isEmpty()) {
+            return current.get(0);
+        }
+        jdbcTemplate.update("INSERT INTO rollup_watermarks (name, last_event_id) VALUES (?, 0)", name);
+        return 0L;
+    }
+
+    /**
+     * Read a watermark without locking it
+     *
+     * @param name Watermark name
+     * @return Last event ID already rolled up, 0 if none
+     */
+    public long findWatermark(String name) {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT last_event_id FROM rollup_watermarks WHERE name = ?", Long.class, name);
+        return current.isEmpty() ? 0L : current.get(0);
+    }
+
+    public void updateWatermark(String name, long lastEventId) {
+        jdbcTemplate.update("UPDATE rollup_watermarks SET last_event_id = ? WHERE name = ?", lastEventId, name);
+    }
+
+    private static Detection mapRow(ResultSet rs) throws SQLException {
+        return new Detection(rs.getLong("student_id"), rs.getLong("classroom_id"),
+                rs.getDate("event_date").toLocalDate(), rs.getTime("seen_at").toLocalTime(),
+                rs.getDouble("confidence"));
+    }
+}
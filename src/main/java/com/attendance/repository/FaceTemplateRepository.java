@@ -0,0 +1,36 @@
+package com.attendance.repository;
+
+import com.attendance.model.FaceTemplate;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for FaceTemplate entity
+ */
+@Repository
+public interface FaceTemplateRepository extends JpaRepository<FaceTemplate, Long> {
+
+    /**
+     * Every template of one model version with its student, read through a
+     * cursor. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT t FROM FaceTemplate t JOIN FETCH t.student WHERE t.modelVersion = :modelVersion "
+            + "ORDER BY t.student.id, t.id")
+    Stream<FaceTemplate> streamWithStudentByModelVersion(@Param("modelVersion") String modelVersion);
+
+    @Modifying
+    @Query("DELETE FROM FaceTemplate t WHERE t.student.id = :studentId AND t.modelVersion = :modelVersion")
+    int deleteByStudentIdAndModelVersion(@Param("studentId") Long studentId,
+            @Param("modelVersion") String modelVersion);
+
+    boolean existsByStudentIdAndModelVersion(Long studentId, String modelVersion);
+}
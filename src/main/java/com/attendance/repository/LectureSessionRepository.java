@@ -0,0 +1,136 @@
+package com.attendance.repository;
+
+import com.attendance.model.LectureSession;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access to lecture_sessions. The snapshot count is incremented in
+ * SQL, so captures never lose an update and no row has to be read first.
+ * Uses MERGE on H2 and INSERT ... ON DUPLICATE KEY UPDATE on MySQL.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LectureSessionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private SqlDialect dialect;
+
+    private static final String H2_ADD_SNAPSHOTS = """
+            MERGE INTO lecture_sessions t
+            USING (SELECT CAST(? AS BIGINT) AS classroom_id, CAST(? AS DATE) AS lecture_date,
+                          CAST(? AS INT) AS snapshots_planned, CAST(? AS INT) AS snapshots) s
+            ON t.classroom_id = s.classroom_id AND t.lecture_date = s.lecture_date
+            WHEN MATCHED THEN UPDATE SET snapshots_taken = t.snapshots_taken + s.snapshots
+            WHEN NOT MATCHED THEN INSERT
+                (classroom_id, lecture_date, snapshots_planned, snapshots_taken, status, present, late, absent)
+                VALUES (s.classroom_id, s.lecture_date, s.snapshots_planned, s.snapshots, 'OPEN', 0, 0, 0)
+            """;
+
+    private static final String MYSQL_ADD_SNAPSHOTS = """
+            INSERT INTO lecture_sessions
+                (classroom_id, lecture_date, snapshots_planned, snapshots_taken, status, present, late, absent)
+            VALUES (?, ?, ?, ?, 'OPEN', 0, 0, 0)
+            ON DUPLICATE KEY UPDATE snapshots_taken = snapshots_taken + VALUES(snapshots_taken)
+            """;
+
+    private static final String SELECT_COLUMNS = "SELECT id, classroom_id, lecture_date, snapshots_planned, "
+            + "snapshots_taken, status, present, late, absent, finalized_at FROM lecture_sessions ";
+
+    private static final RowMapper<LectureSession> ROW_MAPPER = (rs, i) -> {
+        Timestamp finalizedAt = rs.getTimestamp("finalized_at");
+        return new LectureSession(rs.getLong("id"), rs.getLong("classroom_id"),
+                rs.getDate("lecture_date").toLocalDate(), rs.getInt("snapshots_planned"),
+                rs.getInt("snapshots_taken"), LectureSession.Status.valueOf(rs.getString("status")),
+                rs.getLong("present"), rs.getLong("late"), rs.getLong("absent"),
+                finalizedAt != null ? finalizedAt.toLocalDateTime() : null);
+    };
+
+    @PostConstruct
+    void detectDialect() {
+        dialect = SqlDialect.of(jdbcTemplate);
+    }
+
+    /**
+     * Count one snapshot of a lecture, opening the session on the first
+     *
+     * @param classroomId      Classroom ID
+     * @param date             Lecture date
+     * @param snapshotsPlanned Snapshots per lecture, stored when the session opens
+     */
+    public void addSnapshot(Long classroomId, LocalDate date, int snapshotsPlanned) {
+        addSnapshots(classroomId, date, snapshotsPlanned, 1);
+    }
+
+    /**
+     * Read a session and lock its row until the surrounding transaction
+     * ends, opening it without snapshots if the camera never took one
+     *
+     * @param classroomId      Classroom ID
+     * @param date             Lecture date
+     * @param snapshotsPlanned Snapshots per lecture, stored if the session opens
+     * @return The session
+     */
+    public LectureSession lock(Long classroomId, LocalDate date, int snapshotsPlanned) {
+        addSnapshots(classroomId, date, snapshotsPlanned, 0);
+        return jdbcTemplate.queryForObject(SELECT_COLUMNS + "WHERE classroom_id = ? AND lecture_date = ? FOR UPDATE",
+                ROW_MAPPER, classroomId, Date.valueOf(date));
+    }
+
+    /**
+     * Mark a session finalized with its counts
+     *
+     * @param id     Session ID
+     * @param counts Counts of the lecture's records
+     * @return Time of finalization
+     */
+    public LocalDateTime markFinalized(Long id, SummaryCounts counts) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("UPDATE lecture_sessions SET status = 'FINALIZED', present = ?, late = ?, absent = ?, "
+                + "finalized_at = ? WHERE id = ?", counts.present(), counts.late(), counts.absent(),
+                Timestamp.valueOf(now), id);
+        return now;
+    }
+
+    /**
+     * @return Whether the lecture of a classroom on a day has been finalized
+     */
+    public boolean isFinalized(Long classroomId, LocalDate date) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lecture_sessions "
+                + "WHERE classroom_id = ? AND lecture_date = ? AND status = 'FINALIZED'", Integer.class,
+                classroomId, Date.valueOf(date));
+        return count != null && count > 0;
+    }
+
+    /**
+     * @return IDs of the classrooms whose lecture on a day has been finalized
+     */
+    public List<Long> findFinalizedClassrooms(LocalDate date) {
+        return jdbcTemplate.queryForList("SELECT classroom_id FROM lecture_sessions "
+                + "WHERE lecture_date = ? AND status = 'FINALIZED'", Long.class, Date.valueOf(date));
+    }
+
+    /**
+     * @return Sessions of one day, ordered by classroom
+     */
+    public List<LectureSession> findByDate(LocalDate date) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE lecture_date = ? ORDER BY classroom_id", ROW_MAPPER,
+                Date.valueOf(date));
+    }
+
+    private void addSnapshots(Long classroomId, LocalDate date, int snapshotsPlanned, int snapshots) {
+        String sql = dialect == SqlDialect.MYSQL ? MYSQL_ADD_SNAPSHOTS : H2_ADD_SNAPSHOTS;
+        jdbcTemplate.update(sql, classroomId, Date.valueOf(date), snapshotsPlanned, snapshots);
+    }
+}
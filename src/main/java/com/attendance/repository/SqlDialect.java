@@ -0,0 +1,36 @@
+package com.attendance.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Databases the JDBC repositories write upserts for: MERGE on H2, INSERT ...
+ * ON DUPLICATE KEY UPDATE on MySQL and MariaDB
+ */
+enum SqlDialect {
+    H2, MYSQL;
+
+    /**
+     * Dialect of the database behind a JdbcTemplate
+     *
+     * @param jdbcTemplate Template to ask
+     * @return Its dialect
+     * @throws IllegalStateException if the database type cannot be determined or is not supported
+     */
+    static SqlDialect of(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (product == null) {
+            throw new IllegalStateException("Could not determine database type");
+        }
+
+        String name = product.toLowerCase();
+        if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        }
+        if (name.contains("h2")) {
+            return H2;
+        }
+        throw new IllegalStateException("Unsupported database: " + product);
+    }
+}
@@ -0,0 +1,77 @@
+package com.attendance.repository;
+
+import com.attendance.dto.StudentSummaryDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset pages of the student directory. Only the filters actually given
+ * end up in the SQL, so every statement can use an index: student ID order
+ * alone, (department, student_id), or a prefix range scan per searched
+ * column. A search is a UNION of one limited scan per column, each already
+ * past the cursor and ordered by student ID, instead of an OR of LIKEs.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StudentDirectoryRepository {
+
+    private static final List<String> SEARCHED_COLUMNS = List.of("student_id", "first_name", "last_name", "email");
+
+    private static final String SELECT_COLUMNS = "SELECT id, student_id, first_name, last_name, email, department, "
+            + "created_at FROM students ";
+
+    private static final RowMapper<StudentSummaryDTO> ROW_MAPPER = (rs, i) -> new StudentSummaryDTO(
+            rs.getLong("id"), rs.getString("student_id"),
+            rs.getString("first_name") + " " + rs.getString("last_name"), rs.getString("email"),
+            rs.getString("department"), rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Directory rows after a student ID, in student ID order
+     *
+     * @param after      Last student ID of the previous page, or null for the first page
+     * @param prefix     Search prefix ending in '%' and matched against student ID, first
+     *                   name, last name and email, or null; wildcards must be escaped with '!'
+     * @param department Department, or null
+     * @param limit      Maximum number of rows
+     */
+    public List<StudentSummaryDTO> findPage(String after, String prefix, String department, int limit) {
+        // Student IDs are never blank, so "" sorts before all of them
+        String cursor = after != null ? after : "";
+        if (prefix == null) {
+            List<Object> args = new ArrayList<>();
+            String sql = SELECT_COLUMNS + "WHERE " + filters(department, cursor, args)
+                    + " ORDER BY student_id LIMIT ?";
+            args.add(limit);
+            return jdbcTemplate.query(sql, ROW_MAPPER, args.toArray());
+        }
+
+        List<Object> args = new ArrayList<>();
+        List<String> scans = new ArrayList<>();
+        for (String column : SEARCHED_COLUMNS) {
+            args.add(prefix);
+            scans.add("(" + SELECT_COLUMNS + "WHERE " + column + " LIKE ? ESCAPE '!' AND "
+                    + filters(department, cursor, args) + " ORDER BY student_id LIMIT ?)");
+            args.add(limit);
+        }
+        String sql = "SELECT * FROM (" + String.join(" UNION ", scans) + ") t ORDER BY student_id LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, ROW_MAPPER, args.toArray());
+    }
+
+    private static String filters(String department, String cursor, List<Object> args) {
+        StringBuilder sql = new StringBuilder();
+        if (department != null) {
+            sql.append("department = ? AND ");
+            args.add(department);
+        }
+        args.add(cursor);
+        return sql.append("student_id > ?").toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.attendance.repository;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set-based deletes of everything belonging to a group of students, a
+ * bounded batch per call, without loading any entity. Callers keep calling
+ * until a batch comes back empty.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StudentPurgeRepository {
+
+    /**
+     * Tables holding attendance records
+     */
+    public enum RecordTable {
+        ATTENDANCE("attendance"),
+        ARCHIVE("attendance_archive");
+
+        private final String table;
+
+        RecordTable(String table) {
+            this.table = table;
+        }
+    }
+
+    /**
+     * Tables whose rows only reference students
+     */
+    public enum DependentTable {
+        FACE_TEMPLATES("face_templates"),
+        DETECTION_EVENTS("detection_events");
+
+        private final String table;
+
+        DependentTable(String table) {
+            this.table = table;
+        }
+    }
+
+    /**
+     * An attendance record about to be deleted, with what the daily summary
+     * needs to forget it
+     */
+    public record RemovedRecord(Long id, LocalDate date, Long classroomId, AttendanceStatus status) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Next batch of records of some students, locked until the transaction
+     * ends so no other delete can count them twice
+     *
+     * @param table      Live or archive table
+     * @param studentIds Student database IDs
+     * @param limit      Batch size
+     * @return Up to limit records
+     */
+    public List<RemovedRecord> findRecordBatch(RecordTable table, Collection<Long> studentIds, int limit) {
+        List<Object> args = new ArrayList<>(studentIds);
+        args.add(limit);
+        return jdbcTemplate.query("SELECT id, attendance_date, classroom_id, status FROM " + table.table
+                + " WHERE student_id IN (" + placeholders(studentIds.size()) + ") LIMIT ? FOR UPDATE",
+                (rs, i) -> new RemovedRecord(rs.getLong(1), rs.getDate(2).toLocalDate(), rs.getLong(3),
+                        AttendanceStatus.valueOf(rs.getString(4))),
+                args.toArray());
+    }
+
+    /**
+     * @return Number of records deleted
+     */
+    public int deleteRecords(RecordTable table, List<RemovedRecord> records) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM " + table.table + " WHERE id IN ("
+                + placeholders(records.size()) + ")", records.stream().map(RemovedRecord::id).toArray());
+    }
+
+    /**
+     * Delete the next batch of rows of some students
+     *
+     * @return Number of rows deleted; zero once none are left
+     */
+    public int deleteDependentBatch(DependentTable table, Collection<Long> studentIds, int limit) {
+        List<Object> args = new ArrayList<>(studentIds);
+        args.add(limit);
+        // Selected first: MySQL cannot delete from a table it selects from in a subquery
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM " + table.table
+                + " WHERE student_id IN (" + placeholders(studentIds.size()) + ") LIMIT ?", Long.class,
+                args.toArray());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM " + table.table + " WHERE id IN (" + placeholders(ids.size()) + ")",
+                ids.toArray());
+    }
+
+    /**
+     * @return Face image paths of the students that have one
+     */
+    public List<String> findFaceImagePaths(Collection<Long> studentIds) {
+        return jdbcTemplate.queryForList("SELECT face_image_path FROM students WHERE id IN ("
+                + placeholders(studentIds.size()) + ") AND face_image_path IS NOT NULL", String.class,
+                studentIds.toArray());
+    }
+
+    /**
+     * @return Number of students deleted
+     */
+    public int deleteStudents(Collection<Long> studentIds) {
+        return jdbcTemplate.update("DELETE FROM students WHERE id IN (" + placeholders(studentIds.size()) + ")",
+                studentIds.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -2,8 +2,13 @@ package com.attendance.repository;
 
 import com.attendance.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,4 +24,31 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     boolean existsByStudentId(String studentId);
     
     boolean existsByEmail(String email);
+
+    @Query("SELECT s.id FROM Student s WHERE s.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Existing IDs among the given ones, their rows locked until the
+     * transaction ends
+     */
+    @Query(value = "SELECT id FROM students WHERE id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Long> lockExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT s.id FROM Student s WHERE s.department = :department")
+    List<Long> findIdsByDepartment(@Param("department") String department);
+
+    @Query("SELECT s.id FROM Student s WHERE s.createdAt < :before "
+            + "AND (:department IS NULL OR s.department = :department)")
+    List<Long> findIdsRegisteredBefore(@Param("before") LocalDateTime before,
+            @Param("department") String department);
+
+    @Query("SELECT DISTINCT s.department FROM Student s ORDER BY s.department")
+    List<String> findDepartments();
+
+    /**
+     * @return Time of the latest student insert or edit, or null if unknown
+     */
+    @Query("SELECT MAX(s.updatedAt) FROM Student s")
+    LocalDateTime findLastUpdate();
 }
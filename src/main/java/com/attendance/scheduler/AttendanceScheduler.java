@@ -1,16 +1,19 @@
 package com.attendance.scheduler;
 
 import com.attendance.model.CameraConfig;
-import com.attendance.repository.CameraConfigRepository;
-import com.attendance.service.CameraService;
+import com.attendance.pipeline.RecognitionPipeline;
+import com.attendance.repository.ClassroomRepository;
+import com.attendance.service.ClassroomConfigCache;
+import com.attendance.service.DetectionEventBuffer;
+import com.attendance.service.DetectionEventService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import org.springframework.transaction.annotation.Transactional;
-
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,18 +23,23 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class AttendanceScheduler {
 
-    private final CameraConfigRepository cameraConfigRepository;
-    private final CameraService cameraService;
+    private final ClassroomConfigCache classroomConfigCache;
+    private final RecognitionPipeline recognitionPipeline;
+    private final DetectionEventBuffer detectionEventBuffer;
+    private final DetectionEventService detectionEventService;
+    private final ClassroomRepository classroomRepository;
 
     private final Map<Long, Instant> lastCaptureShortcuts = new ConcurrentHashMap<>();
 
     /**
-     * Run every 1 second to check if any camera needs processing
+     * Run every 1 second to check if any camera needs processing. Captures are
+     * queued on the recognition pipeline so a slow camera never blocks the
+     * scheduler thread. Configs come from the config cache, so this does not
+     * touch the database at all.
      */
     @Scheduled(fixedRate = 1000)
-    @Transactional
     public void processCameras() {
-        List<CameraConfig> configs = cameraConfigRepository.findAll();
+        List<CameraConfig> configs = classroomConfigCache.getAllCameraConfigs();
         Instant now = Instant.now();
 
         for (CameraConfig config : configs) {
@@ -44,10 +52,10 @@ public class AttendanceScheduler {
             long calculatedInterval = config.getCalculatedIntervalSeconds();
 
             if (secondsSinceLastRun >= calculatedInterval) {
-                log.info("Time to capture for {}. Interval: {}s. Processing now...",
+                log.info("Time to capture for {}. Interval: {}s. Queueing capture...",
                         config.getClassroom().getCourseCode(), calculatedInterval);
                 try {
-                    cameraService.captureAndProcess(config);
+                    recognitionPipeline.submitCapture(config);
                     lastCaptureShortcuts.put(config.getId(), now);
                 } catch (Exception e) {
                     log.error("Error in scheduler for camera: {}", config.getClassroom().getCourseCode(), e);
@@ -60,4 +68,48 @@ public class AttendanceScheduler {
             }
         }
     }
+
+    /**
+     * Finalize every lecture of today that has ended and is not finalized
+     * yet, of every classroom, whether its attendance comes from a camera or
+     * from uploads only. Buffered detections are flushed and rolled up
+     * first, so final statuses count all of them. Lectures that ended while
+     * the application was down are finalized on the first run.
+     */
+    @Scheduled(fixedRateString = "${attendance.finalize.interval-ms:60000}")
+    public void finalizeEndedLectures() {
+        LocalDate today = LocalDate.now();
+        List<Long> ended;
+        try {
+            ended = classroomRepository.findIdsEndedBy(LocalTime.now());
+        } catch (Exception e) {
+            log.error("Looking up ended lectures failed", e);
+            return;
+        }
+        if (ended.isEmpty()) {
+            return;
+        }
+
+        List<Long> pending;
+        try {
+            pending = detectionEventService.findUnfinalized(today, ended);
+            if (pending.isEmpty()) {
+                return;
+            }
+            log.info("{} lecture(s) ended, flushing buffered detections before finalizing", pending.size());
+            detectionEventBuffer.flush();
+            detectionEventService.rollUp();
+        } catch (Exception e) {
+            log.error("Lecture-end flush failed", e);
+            return;
+        }
+
+        for (Long classroomId : pending) {
+            try {
+                detectionEventService.finalizeLecture(classroomId, today);
+            } catch (Exception e) {
+                log.error("Finalizing the lecture of classroom {} failed, will retry on next run", classroomId, e);
+            }
+        }
+    }
 }
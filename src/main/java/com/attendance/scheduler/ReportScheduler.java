@@ -0,0 +1,34 @@
+package com.attendance.scheduler;
+
+import com.attendance.service.ReportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Pre-generates the previous day's report of every classroom overnight, so
+ * the first download of the morning is served straight from the cache.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportScheduler {
+
+    private final ReportService reportService;
+
+    @Scheduled(cron = "${reports.nightly-cron:0 30 1 * * *}")
+    public void pregenerateReports() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            int evicted = reportService.evictExpiredReports();
+            int ready = reportService.pregenerateDailyReports(yesterday);
+            log.info("Nightly reports for {}: {} classroom report(s) ready, {} expired file(s) removed",
+                    yesterday, ready, evicted);
+        } catch (Exception e) {
+            log.error("Nightly report generation failed", e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.repository.DailySummaryRepository;
+import com.attendance.repository.DailySummaryRepository.ClassroomSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attendance trends over a date range, in daily, weekly or monthly buckets
+ * per classroom, department or student. The database aggregates per day and
+ * status; days are folded into buckets here, which keeps the SQL portable.
+ * Classroom trends over all departments read daily_attendance_summary.
+ * Buckets that ended before today are cached, and dropped again if a write
+ * for one of their days is committed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceAnalyticsService {
+
+    public enum Bucket {
+        DAY, WEEK, MONTH;
+
+        /** Start of the bucket containing a date; weeks start on Monday */
+        LocalDate startOf(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate next(LocalDate start) {
+            return switch (this) {
+                case DAY -> start.plusDays(1);
+                case WEEK -> start.plusWeeks(1);
+                case MONTH -> start.plusMonths(1);
+            };
+        }
+    }
+
+    public enum Dimension {
+        CLASSROOM, DEPARTMENT, STUDENT
+    }
+
+    /**
+     * Counts of one group in one bucket. The first and last bucket are cut
+     * to the requested range.
+     *
+     * @param key   Classroom ID, department or student ID
+     * @param label Course code, department or student code
+     */
+    public record BucketStats(LocalDate bucketStart, LocalDate bucketEnd, String key, String label,
+            long total, long present, long late, long absent) {
+
+        public double getAttendanceRate() {
+            return total > 0 ? (double) present / total * 100 : 0.0;
+        }
+    }
+
+    private record CacheKey(Dimension dimension, Long classroomId, String department,
+            LocalDate start, LocalDate end) {
+    }
+
+    private record Range(LocalDate start, LocalDate end) {
+    }
+
+    private final AttendanceArchiveService attendanceArchiveService;
+    private final DailySummaryRepository dailySummaryRepository;
+
+    @Value("${analytics.max-days:366}")
+    private int maxDays;
+
+    @Value("${analytics.cache-entries:2000}")
+    private int cacheEntries;
+
+    // Closed buckets, least recently used first
+    private final Map<CacheKey, List<BucketStats>> closedBuckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Keeps a load that raced with an invalidation out of the cache
+    private final GenerationGuard guard = new GenerationGuard();
+
+    /**
+     * Attendance per bucket and group
+     *
+     * @param from        First date
+     * @param to          Last date
+     * @param bucket      Bucket size
+     * @param dimension   What to group by
+     * @param classroomId Only count this classroom, or null
+     * @param department  Only count students of this department, or null
+     * @return Statistics ordered by bucket, then label
+     * @throws IllegalArgumentException if the range is invalid, or students are
+     *                                  grouped without a classroom or department
+     */
+    @Transactional(readOnly = true)
+    public List<BucketStats> getTrends(LocalDate from, LocalDate to, Bucket bucket, Dimension dimension,
+            Long classroomId, String department) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Date range must not exceed " + maxDays + " days");
+        }
+        String dept = department == null || department.isBlank() ? null : department;
+        if (dimension == Dimension.STUDENT && classroomId == null && dept == null) {
+            throw new IllegalArgumentException("Grouping by student needs a classroomId or department");
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        for (LocalDate start = bucket.startOf(from); !start.isAfter(to); start = bucket.next(start)) {
+            LocalDate end = bucket.next(start).minusDays(1);
+            ranges.add(new Range(start.isBefore(from) ? from : start, end.isAfter(to) ? to : end));
+        }
+
+        LocalDate today = LocalDate.now();
+        Map<Range, List<BucketStats>> results = new HashMap<>();
+        List<Range> missing = new ArrayList<>();
+        synchronized (closedBuckets) {
+            for (Range range : ranges) {
+                List<BucketStats> cached = closedBuckets.get(key(dimension, classroomId, dept, range));
+                if (cached != null) {
+                    results.put(range, cached);
+                } else {
+                    missing.add(range);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // One query over the span of everything not cached
+            LocalDate spanStart = missing.get(0).start();
+            LocalDate spanEnd = missing.get(missing.size() - 1).end();
+            results.putAll(guard.load(
+                    () -> fold(missing, ReplicaRouting.onPrimary(
+                            () -> countDaily(dimension, spanStart, spanEnd, classroomId, dept))),
+                    loaded -> {
+                        synchronized (closedBuckets) {
+                            loaded.forEach((range, stats) -> {
+                                if (range.end().isBefore(today)) {
+                                    closedBuckets.put(key(dimension, classroomId, dept, range), stats);
+                                }
+                            });
+                            evictOverflow();
+                        }
+                    }));
+        }
+
+        List<BucketStats> trends = new ArrayList<>();
+        ranges.forEach(range -> trends.addAll(results.get(range)));
+        return trends;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        LocalDate date = event.date();
+        if (!date.isBefore(LocalDate.now())) {
+            // Buckets reaching today are never cached
+            return;
+        }
+        guard.invalidate(() -> {
+            synchronized (closedBuckets) {
+                closedBuckets.keySet().removeIf(key -> !date.isBefore(key.start()) && !date.isAfter(key.end()));
+            }
+        });
+    }
+
+    /**
+     * Drop every cached bucket, for changes that bypass the attendance writer
+     */
+    public void invalidateAll() {
+        guard.invalidate(() -> {
+            synchronized (closedBuckets) {
+                closedBuckets.clear();
+            }
+        });
+    }
+
+    private List<Object[]> countDaily(Dimension dimension, LocalDate from, LocalDate to, Long classroomId,
+            String department) {
+        if (dimension == Dimension.CLASSROOM && department == null) {
+            // Per-classroom days are already summed in daily_attendance_summary
+            return fromSummary(from, to, classroomId);
+        }
+        return attendanceArchiveService.countDaily(dimension, from, to, classroomId, department);
+    }
+
+    private List<Object[]> fromSummary(LocalDate from, LocalDate to, Long classroomId) {
+        List<Object[]> rows = new ArrayList<>();
+        for (ClassroomSummary day : dailySummaryRepository.findWithCourseCode(from, to, classroomId)) {
+            addRow(rows, day, AttendanceStatus.PRESENT, day.present());
+            addRow(rows, day, AttendanceStatus.LATE, day.late());
+            addRow(rows, day, AttendanceStatus.ABSENT, day.absent());
+        }
+        return rows;
+    }
+
+    private static void addRow(List<Object[]> rows, ClassroomSummary day, AttendanceStatus status, long count) {
+        if (count > 0) {
+            rows.add(new Object[]{day.date(), day.classroomId(), day.courseCode(), status, count});
+        }
+    }
+
+    /**
+     * Fold daily rows of [date, key, label, status, count] into the ranges
+     * they fall in. Ranges are consecutive and ordered.
+     */
+    private static Map<Range, List<BucketStats>> fold(List<Range> ranges, List<Object[]> rows) {
+        Map<Range, Map<String, Map<AttendanceStatus, Long>>> counts = new HashMap<>();
+        Map<String, String> labels = new HashMap<>();
+        ranges.forEach(range -> counts.put(range, new HashMap<>()));
+
+        for (Object[] row : rows) {
+            LocalDate date = (LocalDate) row[0];
+            Range range = rangeOf(ranges, date);
+            if (range == null) {
+                // Falls between two missing ranges, in a bucket served from the cache
+                continue;
+            }
+            String key = String.valueOf(row[1]);
+            labels.put(key, (String) row[2]);
+            counts.get(range).computeIfAbsent(key, k -> new EnumMap<>(AttendanceStatus.class))
+                    .merge((AttendanceStatus) row[3], (Long) row[4], Long::sum);
+        }
+
+        Map<Range, List<BucketStats>> result = new HashMap<>();
+        counts.forEach((range, byKey) -> result.put(range, byKey.entrySet().stream()
+                .map(e -> {
+                    Map<AttendanceStatus, Long> byStatus = e.getValue();
+                    return new BucketStats(range.start(), range.end(), e.getKey(), labels.get(e.getKey()),
+                            byStatus.values().stream().mapToLong(Long::longValue).sum(),
+                            byStatus.getOrDefault(AttendanceStatus.PRESENT, 0L),
+                            byStatus.getOrDefault(AttendanceStatus.LATE, 0L),
+                            byStatus.getOrDefault(AttendanceStatus.ABSENT, 0L));
+                })
+                .sorted(Comparator.comparing(BucketStats::label, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList()));
+        return result;
+    }
+
+    private static Range rangeOf(List<Range> ranges, LocalDate date) {
+        int low = 0;
+        int high = ranges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Range range = ranges.get(mid);
+            if (date.isBefore(range.start())) {
+                high = mid - 1;
+            } else if (date.isAfter(range.end())) {
+                low = mid + 1;
+            } else {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    private static CacheKey key(Dimension dimension, Long classroomId, String department, Range range) {
+        return new CacheKey(dimension, classroomId, department, range.start(), range.end());
+    }
+
+    private void evictOverflow() {
+        Iterator<CacheKey> oldest = closedBuckets.keySet().iterator();
+        while (closedBuckets.size() > cacheEntries && oldest.hasNext()) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.attendance.service;
+
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.ArchivedTerm;
+import com.attendance.repository.ArchivedAttendanceRepository;
+import com.attendance.repository.ArchivedTermRepository;
+import com.attendance.repository.AttendanceRepository;
+import com.attendance.service.AttendanceAnalyticsService.Dimension;
+import com.attendance.service.TermCalendar.Term;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Moves the attendance records of closed terms into attendance_archive,
+ * keeping the attendance table (and its unique index) to recent terms.
+ * Records are moved one day per transaction, so every record is in exactly
+ * one of the two tables at any time; a term is registered before the first
+ * day moves. Reads through this service cover both tables for registered
+ * terms, which keeps exports, analytics and per-student statistics
+ * unchanged. The daily summary is not touched.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceArchiveService {
+
+    private static final String MOVE_DAY = "INSERT INTO attendance_archive (id, student_id, classroom_id, "
+            + "attendance_date, check_in_time, status, confidence_score, max_confidence_score, detection_count, "
+            + "created_at) "
+            + "SELECT id, student_id, classroom_id, attendance_date, check_in_time, status, confidence_score, "
+            + "max_confidence_score, detection_count, created_at FROM attendance WHERE attendance_date = ?";
+
+    private final AttendanceRepository attendanceRepository;
+    private final ArchivedAttendanceRepository archivedAttendanceRepository;
+    private final ArchivedTermRepository archivedTermRepository;
+    private final TermCalendar termCalendar;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${archive.after-days:60}")
+    private int afterDays;
+
+    private final ReentrantLock archiveLock = new ReentrantLock();
+
+    // Registered terms, oldest first
+    private volatile List<ArchivedTerm> terms = List.of();
+
+    @PostConstruct
+    void loadTerms() {
+        terms = List.copyOf(archivedTermRepository.findAllByOrderByTermStartAsc());
+    }
+
+    /**
+     * @return Registered terms, oldest first
+     */
+    public List<ArchivedTerm> getArchivedTerms() {
+        return terms;
+    }
+
+    /**
+     * @return True if any day of the range is in a registered term
+     */
+    public boolean covers(LocalDate from, LocalDate to) {
+        for (ArchivedTerm term : terms) {
+            if (!term.getTermStart().isAfter(to) && !term.getTermEnd().isBefore(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean covers(LocalDate date) {
+        return covers(date, date);
+    }
+
+    /**
+     * Rows of one classroom and day, from either table
+     */
+    public List<AttendanceRowDTO> findRowsByDateAndClassroom(LocalDate date, Long classroomId) {
+        List<AttendanceRowDTO> rows = attendanceRepository.findRowsByDateAndClassroom(date, classroomId);
+        if (!covers(date)) {
+            return rows;
+        }
+        List<AttendanceRowDTO> all = new ArrayList<>(archivedAttendanceRepository.findRowsByDateAndClassroom(date,
+                classroomId));
+        all.addAll(rows);
+        return all;
+    }
+
+    /**
+     * Rows of one classroom and day through a cursor, from either table.
+     * Must be consumed inside a transaction and closed.
+     */
+    public Stream<AttendanceRowDTO> streamRowsByDateAndClassroom(LocalDate date, Long classroomId) {
+        Stream<AttendanceRowDTO> rows = attendanceRepository.streamRowsByDateAndClassroom(date, classroomId);
+        if (!covers(date)) {
+            return rows;
+        }
+        return Stream.concat(archivedAttendanceRepository.streamRowsByClassroomAndDateRange(classroomId, date, date),
+                rows);
+    }
+
+    /**
+     * Rows of one classroom over a date range through a cursor, archived
+     * days first. Must be consumed inside a transaction and closed.
+     */
+    public Stream<AttendanceRowDTO> streamRowsByClassroomAndDateRange(Long classroomId, LocalDate from,
+            LocalDate to) {
+        Stream<AttendanceRowDTO> rows = attendanceRepository.streamRowsByClassroomAndDateRange(classroomId, from, to);
+        if (!covers(from, to)) {
+            return rows;
+        }
+        return Stream.concat(archivedAttendanceRepository.streamRowsByClassroomAndDateRange(classroomId, from, to),
+                rows);
+    }
+
+    /**
+     * Rows of [classroom id, student id, date, AttendanceStatus], archived
+     * days first. Must be consumed inside a transaction and closed.
+     */
+    public Stream<Object[]> streamStatusByDateRange(LocalDate from, LocalDate to, Long classroomId) {
+        Stream<Object[]> rows = attendanceRepository.streamStatusByDateRange(from, to, classroomId);
+        if (!covers(from, to)) {
+            return rows;
+        }
+        return Stream.concat(archivedAttendanceRepository.streamStatusByDateRange(from, to, classroomId), rows);
+    }
+
+    /**
+     * Rows of [student id, AttendanceStatus, Long]; a student and status may
+     * appear once per table
+     */
+    public List<Object[]> countByStatusForStudents(Collection<Long> studentIds) {
+        List<Object[]> rows = attendanceRepository.countByStatusForStudents(studentIds);
+        if (terms.isEmpty()) {
+            return rows;
+        }
+        List<Object[]> all = new ArrayList<>(rows);
+        all.addAll(archivedAttendanceRepository.countByStatusForStudents(studentIds));
+        return all;
+    }
+
+    /**
+     * Rows of [student id, AttendanceStatus, Long]; a student and status may
+     * appear once per table
+     */
+    public List<Object[]> countByStatusForClassroom(Long classroomId) {
+        List<Object[]> rows = attendanceRepository.countByStatusForClassroom(classroomId);
+        if (terms.isEmpty()) {
+            return rows;
+        }
+        List<Object[]> all = new ArrayList<>(rows);
+        all.addAll(archivedAttendanceRepository.countByStatusForClassroom(classroomId));
+        return all;
+    }
+
+    /**
+     * Daily rows of [date, key, label, AttendanceStatus, Long] grouped by a
+     * dimension; a group may appear once per table on a day
+     */
+    public List<Object[]> countDaily(Dimension dimension, LocalDate from, LocalDate to, Long classroomId,
+            String department) {
+        List<Object[]> rows = switch (dimension) {
+            case CLASSROOM -> attendanceRepository.countDailyByClassroom(from, to, classroomId, department);
+            case DEPARTMENT -> attendanceRepository.countDailyByDepartment(from, to, classroomId, department);
+            case STUDENT -> attendanceRepository.countDailyByStudent(from, to, classroomId, department);
+        };
+        if (!covers(from, to)) {
+            return rows;
+        }
+        List<Object[]> all = new ArrayList<>(rows);
+        all.addAll(switch (dimension) {
+            case CLASSROOM -> archivedAttendanceRepository.countDailyByClassroom(from, to, classroomId, department);
+            case DEPARTMENT -> archivedAttendanceRepository.countDailyByDepartment(from, to, classroomId, department);
+            case STUDENT -> archivedAttendanceRepository.countDailyByStudent(from, to, classroomId, department);
+        });
+        return all;
+    }
+
+    @Scheduled(cron = "${archive.cron:0 45 2 * * *}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Date first = jdbcTemplate.queryForObject("SELECT MIN(attendance_date) FROM attendance", Date.class);
+            if (first == null) {
+                return;
+            }
+            LocalDate cutoff = LocalDate.now().minusDays(afterDays);
+            for (Term term = termCalendar.termOf(first.toLocalDate()); term.end().isBefore(cutoff);
+                    term = termCalendar.termOf(term.end().plusDays(1))) {
+                archiveTerm(term.start());
+            }
+        } catch (Exception e) {
+            log.error("Scheduled attendance archival failed", e);
+        }
+    }
+
+    /**
+     * Move the records of one closed term to the archive. Resumes a term
+     * whose archival was interrupted; an archived term is left as it is.
+     *
+     * @param date Any day of the term
+     * @return The archived term
+     * @throws IllegalArgumentException if the term ended less than
+     *                                  archive.after-days ago
+     * @throws IllegalStateException    if another archival is running
+     */
+    public ArchivedTerm archiveTerm(LocalDate date) {
+        Term term = termCalendar.termOf(date);
+        if (!term.end().isBefore(LocalDate.now().minusDays(afterDays))) {
+            throw new IllegalArgumentException(String.format(
+                    "Term %s to %s has not been closed for %d days", term.start(), term.end(), afterDays));
+        }
+        if (!archiveLock.tryLock()) {
+            throw new IllegalStateException("Another archival is running");
+        }
+        try {
+            ArchivedTerm record = archivedTermRepository.findByTermStart(term.start()).orElse(null);
+            if (record != null && record.getStatus() == ArchivedTerm.Status.ARCHIVED) {
+                return record;
+            }
+            if (record == null) {
+                // Registered before anything moves, so reads start covering the archive first
+                record = archivedTermRepository.save(new ArchivedTerm(null, term.start(), term.end(),
+                        ArchivedTerm.Status.ARCHIVING, 0, LocalDateTime.now(), null));
+                loadTerms();
+            }
+
+            long moved = 0;
+            for (LocalDate day = term.start(); !day.isAfter(term.end()); day = day.plusDays(1)) {
+                LocalDate current = day;
+                moved += transactionTemplate.execute(status -> moveDay(current));
+            }
+
+            record.setStatus(ArchivedTerm.Status.ARCHIVED);
+            // Counted from the archive, which includes days moved by an interrupted run
+            record.setRowsArchived(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attendance_archive "
+                    + "WHERE attendance_date BETWEEN ? AND ?", Long.class,
+                    Date.valueOf(term.start()), Date.valueOf(term.end())));
+            record.setArchivedAt(LocalDateTime.now());
+            record = archivedTermRepository.save(record);
+            loadTerms();
+            log.info("Archived term {} to {}: {} record(s) moved", term.start(), term.end(), moved);
+            return record;
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private int moveDay(LocalDate day) {
+        int copied = jdbcTemplate.update(MOVE_DAY, Date.valueOf(day));
+        int deleted = jdbcTemplate.update("DELETE FROM attendance WHERE attendance_date = ?", Date.valueOf(day));
+        if (copied != deleted) {
+            // A record was written between the two statements; roll back and let the next run retry
+            throw new IllegalStateException(String.format(
+                    "Attendance of %s changed while archiving (%d copied, %d deleted)", day, copied, deleted));
+        }
+        return copied;
+    }
+}
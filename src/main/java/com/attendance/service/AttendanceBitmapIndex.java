@@ -0,0 +1,325 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import com.attendance.service.TermCalendar.Term;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Who attended which lecture, per classroom and term, held in memory for
+ * pattern queries that would otherwise scan the attendance table: absence
+ * streaks, rates below a threshold, and students matching in several
+ * classrooms at once. A lecture is a day on which the classroom has at
+ * least one record. Each student has one bit per lecture, set when present
+ * or late; their lectures count from their first record in the classroom.
+ * The current term is built at startup and other terms on first use.
+ * Committed writes are applied in place.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttendanceBitmapIndex {
+
+    /**
+     * How results of several classrooms are combined
+     */
+    public enum Match {
+        /** Students matching in every classroom */
+        ALL,
+        /** Students matching in at least one classroom */
+        ANY
+    }
+
+    /**
+     * Attendance of one student in one classroom over a term, up to its
+     * last lecture so far
+     *
+     * @param lectures             Lectures since the student's first record
+     * @param attended             Lectures present or late
+     * @param longestAbsenceStreak Most consecutive lectures missed
+     * @param currentAbsenceStreak Lectures missed since the last one attended
+     */
+    public record StudentPattern(Long studentId, Long classroomId, int lectures, int attended,
+            int longestAbsenceStreak, int currentAbsenceStreak) {
+
+        public double getAttendanceRate() {
+            return lectures > 0 ? (double) attended / lectures * 100 : 0.0;
+        }
+    }
+
+    private record Key(Long classroomId, LocalDate termStart) {
+    }
+
+    private final AttendanceArchiveService attendanceArchiveService;
+    private final ClassroomConfigCache classroomConfigCache;
+    private final TermCalendar termCalendar;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private final Map<Key, ClassroomTermIndex> indexes = new ConcurrentHashMap<>();
+
+    // Bumped whenever a write cannot be applied in place, so a load that raced with it is not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildCurrentTerm() {
+        Term term = termCalendar.termOf(LocalDate.now());
+        long seen = generation.get();
+        Map<Long, ClassroomTermIndex> built = load(term, null);
+        synchronized (this) {
+            if (generation.get() != seen) {
+                log.info("Attendance changed while building the bitmap index; classrooms load on first use");
+                return;
+            }
+            built.forEach((classroomId, index) -> indexes.put(new Key(classroomId, term.start()), index));
+        }
+        log.info("Built attendance bitmap index for term {} to {}: {} classroom(s)",
+                term.start(), term.end(), built.size());
+    }
+
+    /**
+     * Students who missed a number of consecutive lectures
+     *
+     * @param classroomIds Classrooms to look in
+     * @param date         Any day of the term
+     * @param minStreak    Lectures missed in a row
+     * @param current      Only count the streak running up to the last lecture
+     * @param match        How to combine several classrooms
+     * @return Patterns of the matching students, ordered by student
+     * @throws IllegalArgumentException if no or an unknown classroom is given,
+     *                                  or minStreak is below 1
+     */
+    public List<StudentPattern> findAbsenceStreaks(Collection<Long> classroomIds, LocalDate date, int minStreak,
+            boolean current, Match match) {
+        if (minStreak < 1) {
+            throw new IllegalArgumentException("minStreak must be at least 1");
+        }
+        return find(classroomIds, date, match, pattern ->
+                (current ? pattern.currentAbsenceStreak() : pattern.longestAbsenceStreak()) >= minStreak);
+    }
+
+    /**
+     * Students whose attendance rate is below a threshold
+     *
+     * @param classroomIds Classrooms to look in
+     * @param date         Any day of the term
+     * @param rate         Threshold in percent
+     * @param match        How to combine several classrooms
+     * @return Patterns of the matching students, ordered by student
+     * @throws IllegalArgumentException if no or an unknown classroom is given,
+     *                                  or the rate is not within (0, 100]
+     */
+    public List<StudentPattern> findBelowRate(Collection<Long> classroomIds, LocalDate date, double rate,
+            Match match) {
+        if (rate <= 0 || rate > 100) {
+            throw new IllegalArgumentException("Rate must be above 0 and at most 100");
+        }
+        return find(classroomIds, date, match, pattern -> pattern.getAttendanceRate() < rate);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onAttendanceChanged(AttendanceChangedEvent event) {
+        LocalDate termStart = termCalendar.termOf(event.date()).start();
+        if (event.replaced()) {
+            generation.incrementAndGet();
+            indexes.keySet().removeIf(key -> key.termStart().equals(termStart));
+            return;
+        }
+
+        for (StatusTransition transition : event.transitions()) {
+            if (!transition.statusChanged()) {
+                continue;
+            }
+            Key key = new Key(transition.classroomId(), termStart);
+            ClassroomTermIndex index = indexes.get(key);
+            if (index == null) {
+                generation.incrementAndGet();
+            } else if (!index.set(transition.studentId(), event.date(), transition.current())) {
+                // A new lecture before the last one shifts every bit; rebuild on next use
+                generation.incrementAndGet();
+                indexes.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drop everything, for changes that bypass the attendance writer
+     */
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        indexes.clear();
+    }
+
+    private List<StudentPattern> find(Collection<Long> classroomIds, LocalDate date, Match match,
+            Predicate<StudentPattern> test) {
+        if (classroomIds == null || classroomIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one classroomId is required");
+        }
+        Term term = termCalendar.termOf(date);
+
+        Map<Long, List<StudentPattern>> byStudent = new TreeMap<>();
+        Set<Long> matched = null;
+        for (Long classroomId : new LinkedHashSet<>(classroomIds)) {
+            if (!classroomConfigCache.classroomExists(classroomId)) {
+                throw new IllegalArgumentException("Classroom not found: " + classroomId);
+            }
+            Set<Long> students = new HashSet<>();
+            for (StudentPattern pattern : get(classroomId, term).match(classroomId, test)) {
+                students.add(pattern.studentId());
+                byStudent.computeIfAbsent(pattern.studentId(), id -> new ArrayList<>()).add(pattern);
+            }
+            if (matched == null) {
+                matched = students;
+            } else if (match == Match.ALL) {
+                matched.retainAll(students);
+            } else {
+                matched.addAll(students);
+            }
+        }
+
+        Set<Long> result = matched;
+        return byStudent.entrySet().stream()
+                .filter(entry -> result.contains(entry.getKey()))
+                .flatMap(entry -> entry.getValue().stream())
+                .toList();
+    }
+
+    private ClassroomTermIndex get(Long classroomId, Term term) {
+        Key key = new Key(classroomId, term.start());
+        ClassroomTermIndex index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        long seen = generation.get();
+        index = load(term, classroomId).getOrDefault(classroomId, new ClassroomTermIndex());
+        synchronized (this) {
+            if (generation.get() == seen) {
+                indexes.put(key, index);
+            }
+        }
+        return index;
+    }
+
+    private Map<Long, ClassroomTermIndex> load(Term term, Long classroomId) {
+        Map<Long, ClassroomTermIndex> built = new HashMap<>();
+        ReplicaRouting.onPrimary(() -> readOnlyTransaction.execute(status -> {
+            try (Stream<Object[]> rows = attendanceArchiveService.streamStatusByDateRange(
+                    term.start(), term.end(), classroomId)) {
+                // Ordered by classroom and date within each table, and archived days come first,
+                // so lectures are only ever appended
+                rows.forEach(row -> built.computeIfAbsent((Long) row[0], id -> new ClassroomTermIndex())
+                        .set((Long) row[1], (LocalDate) row[2], (AttendanceStatus) row[3]));
+            }
+            return null;
+        }));
+        return built;
+    }
+
+    /**
+     * Lectures of one classroom in one term and a bitmap per student over them
+     */
+    private static final class ClassroomTermIndex {
+
+        private final List<LocalDate> lectures = new ArrayList<>();
+        private final Map<Long, StudentBits> students = new HashMap<>();
+
+        private static final class StudentBits {
+            private int first;
+            private final BitSet attended = new BitSet();
+
+            private StudentBits(int first) {
+                this.first = first;
+            }
+        }
+
+        /**
+         * Record a student's status on a day
+         *
+         * @return False if the day is a new lecture before the last one, which
+         *         this index cannot insert
+         */
+        synchronized boolean set(Long studentId, LocalDate date, AttendanceStatus status) {
+            int position = Collections.binarySearch(lectures, date);
+            if (position < 0) {
+                if (-position - 1 != lectures.size()) {
+                    return false;
+                }
+                lectures.add(date);
+                position = lectures.size() - 1;
+            }
+
+            StudentBits bits = students.get(studentId);
+            if (bits == null) {
+                bits = new StudentBits(position);
+                students.put(studentId, bits);
+            } else if (position < bits.first) {
+                bits.first = position;
+            }
+            bits.attended.set(position, status != AttendanceStatus.ABSENT);
+            return true;
+        }
+
+        synchronized List<StudentPattern> match(Long classroomId, Predicate<StudentPattern> test) {
+            int held = lectures.size();
+            List<StudentPattern> result = new ArrayList<>();
+            students.forEach((studentId, bits) -> {
+                StudentPattern pattern = pattern(studentId, classroomId, bits, held);
+                if (test.test(pattern)) {
+                    result.add(pattern);
+                }
+            });
+            return result;
+        }
+
+        private static StudentPattern pattern(Long studentId, Long classroomId, StudentBits bits, int held) {
+            BitSet attended = bits.attended;
+            int longest = 0;
+            for (int from = bits.first; from < held; ) {
+                int next = attended.nextSetBit(from);
+                if (next < 0) {
+                    next = held;
+                }
+                longest = Math.max(longest, next - from);
+                from = next + 1;
+            }
+            int lastAttended = Math.max(attended.previousSetBit(held - 1), bits.first - 1);
+            return new StudentPattern(studentId, classroomId, held - bits.first, attended.cardinality(),
+                    longest, held - 1 - lastAttended);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.attendance.service;
+
+import com.attendance.dto.ClassroomUpdateDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+
+/**
+ * Sends presence roster changes as one compact message per classroom per
+ * broadcast window, instead of one full entity per recognized face. Repeated
+ * changes to the same student within a window collapse into the latest one.
+ * Stats are pushed at most once per stats interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttendanceBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DailyAttendanceStats dailyAttendanceStats;
+    private final PresenceRoster presenceRoster;
+
+    @Value("${websocket.stats.min-interval-ms:2000}")
+    private long statsMinIntervalMs;
+
+    private final Object lock = new Object();
+    private boolean statsDirty;
+    private long lastStatsSentAt;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        synchronized (lock) {
+            statsDirty = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.broadcast.window-ms:1000}")
+    public void flush() {
+        boolean sendStats = false;
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            if (statsDirty && now - lastStatsSentAt >= statsMinIntervalMs) {
+                statsDirty = false;
+                lastStatsSentAt = now;
+                sendStats = true;
+            }
+        }
+
+        try {
+            for (ClassroomUpdateDTO update : presenceRoster.drainChanges()) {
+                messagingTemplate.convertAndSend("/topic/attendance/" + update.getClassroomId(), update);
+            }
+
+            if (sendStats) {
+                messagingTemplate.convertAndSend("/topic/stats", dailyAttendanceStats.getStats(LocalDate.now()));
+            }
+        } catch (Exception e) {
+            log.error("Failed to send real-time update", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Published by the attendance writer for every committed batch of changes,
+ * so derived views can be kept up to date without re-counting or re-reading.
+ *
+ * @param date        Attendance date
+ * @param transitions Every record the batch changed
+ * @param replaced    True if the whole day was rewritten and derived views
+ *                    must be recomputed
+ */
+public record AttendanceChangedEvent(LocalDate date, List<StatusTransition> transitions, boolean replaced) {
+
+    /**
+     * One record changing. Previous equals current when only the count moved.
+     *
+     * @param previous   Status before the change, null for a new record
+     * @param current    Status after the change
+     * @param detections Detection count after the change
+     */
+    public record StatusTransition(Long studentId, Long classroomId, AttendanceStatus previous,
+            AttendanceStatus current, int detections) {
+
+        public boolean statusChanged() {
+            return previous != current;
+        }
+    }
+
+    public static AttendanceChangedEvent replaced(LocalDate date) {
+        return new AttendanceChangedEvent(date, List.of(), true);
+    }
+}
@@ -1,27 +1,33 @@
 package com.attendance.service;
 
+import com.attendance.config.ReplicaRouting;
+import com.attendance.dto.AttendanceRowDTO;
 import com.attendance.model.Attendance;
 import com.attendance.model.Attendance.AttendanceStatus;
-import com.attendance.model.Classroom;
-import com.attendance.model.Student;
+import com.attendance.repository.AttendanceBatchRepository;
+import com.attendance.repository.AttendanceBatchRepository.AttendanceDelta;
+import com.attendance.repository.AttendanceBatchRepository.AttendanceState;
 import com.attendance.repository.AttendanceRepository;
-import com.attendance.repository.ClassroomRepository;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
 import com.attendance.repository.StudentRepository;
-import com.attendance.util.FaceDetector;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.opencv.core.Mat;
-import org.opencv.core.Rect;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service for attendance management operations
@@ -32,162 +38,145 @@ import java.util.Optional;
 public class AttendanceService {
 
     private final AttendanceRepository attendanceRepository;
+    private final AttendanceBatchRepository attendanceBatchRepository;
+    private final DailyAttendanceStats dailyAttendanceStats;
+    private final StudentStatsCache studentStatsCache;
+    private final DailySummaryService dailySummaryService;
+    private final AttendanceArchiveService attendanceArchiveService;
+    private final TermCalendar termCalendar;
     private final StudentRepository studentRepository;
-    private final ClassroomRepository classroomRepository;
-    private final com.attendance.repository.CameraConfigRepository cameraConfigRepository; // Added dependency
-    private final FaceRecognitionService faceRecognitionService;
-    private final FaceDetector faceDetector;
-    private final org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
-     * Process camera feed image and mark attendance for recognized students
+     * Apply rolled-up detection deltas, one JDBC batch per classroom. Only
+     * counts move; statuses are settled when the lecture is finalized.
+     * Deltas of students deleted since they were detected are skipped. Joins
+     * the caller's transaction if there is one.
      * 
-     * @param imageFile   Camera image file
-     * @param classroomId Classroom ID
-     * @return List of attendance records created
-     * @throws IOException if image processing fails
+     * @param deltas Detection deltas, possibly spanning several classrooms
      */
     @Transactional
-    public List<Attendance> processCameraFeed(MultipartFile imageFile, Long classroomId)
-            throws IOException {
-
-        Classroom classroom = classroomRepository.findById(classroomId)
-                .orElseThrow(() -> new IllegalArgumentException("Classroom not found with id: " + classroomId));
-
-        // Convert image to Mat
-        byte[] imageBytes = imageFile.getBytes();
-        Mat image = faceDetector.byteArrayToMat(imageBytes);
-
-        if (image.empty()) {
-            throw new IllegalArgumentException("Invalid image data");
+    public void applyDeltas(Collection<AttendanceDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Set<Long> existing = new HashSet<>(studentRepository.findExistingIds(
+                deltas.stream().map(AttendanceDelta::studentId).distinct().toList()));
+        List<AttendanceDelta> applicable = deltas.stream().filter(d -> existing.contains(d.studentId())).toList();
+        if (applicable.size() < deltas.size()) {
+            log.debug("Skipped {} attendance delta(s) of deleted students", deltas.size() - applicable.size());
         }
 
-        return processFaceProcessing(image, classroom);
+        Map<LocalDate, List<StatusTransition>> transitionsByDate = new HashMap<>();
+        applicable.stream()
+                .collect(Collectors.groupingBy(d -> Map.entry(d.classroomId(), d.date())))
+                .forEach((key, group) -> {
+                    Long classroomId = key.getKey();
+
+                    // Prior states give the new counts and statuses without reading the rows back
+                    Map<Long, AttendanceState> before = attendanceBatchRepository.findStates(classroomId,
+                            key.getValue(), group.stream().map(AttendanceDelta::studentId).toList());
+                    attendanceBatchRepository.upsert(group);
+
+                    List<StatusTransition> transitions = transitionsByDate.computeIfAbsent(key.getValue(),
+                            d -> new ArrayList<>());
+                    for (AttendanceDelta delta : group) {
+                        AttendanceState previous = before.get(delta.studentId());
+                        int detections = delta.detections() + (previous != null ? previous.detections() : 0);
+                        transitions.add(new StatusTransition(delta.studentId(), classroomId,
+                                previous != null ? previous.status() : null,
+                                previous != null ? previous.status() : AttendanceBatchRepository.PROVISIONAL_STATUS,
+                                detections));
+                    }
+                });
+
+        transitionsByDate.forEach((date, transitions) -> {
+            if (!transitions.isEmpty()) {
+                dailySummaryService.record(date, transitions);
+                eventPublisher.publishEvent(new AttendanceChangedEvent(date, transitions, false));
+            }
+        });
     }
 
     /**
-     * Process OpenCV Mat image for face recognition and attendance
+     * Finalize one lecture: every record gets its final status from its
+     * detections against the snapshots taken, in one statement, and every
+     * student of the classroom's roster without a record gets an ABSENT one,
+     * in another. There is no enrolment, so the roster is everyone with a
+     * record in the classroom earlier in the term. A lecture nobody was
+     * detected in is left alone. Joins the caller's transaction if there is
+     * one; finalizing again settles records added since.
      * 
-     * @param image     OpenCV Mat image
-     * @param classroom Classroom entity
-     * @return List of attendance records
+     * @param classroomId Classroom ID
+     * @param date        Lecture date
+     * @param snapshots   Snapshots the detections are measured against
+     * @param recordedAt  Check-in time of the ABSENT records
+     * @return Counts of the lecture's records
      */
     @Transactional
-    public List<Attendance> processFaceProcessing(Mat image, Classroom classroom) {
-        // Detect faces in image
-        List<Rect> faces = faceRecognitionService.detectFaces(image);
-        log.info("Detected {} face(s) in camera feed", faces.size());
-
-        List<Attendance> attendanceRecords = new ArrayList<>();
-
-        // Get all students with face encodings
-        List<Student> allStudents = studentRepository.findAll();
-        List<Student> studentsWithFaces = allStudents.stream()
-                .filter(s -> s.getFaceEncoding() != null && s.getFaceEncoding().length > 0)
-                .toList();
-
-        // Process each detected face
-        for (Rect faceRect : faces) {
-            Mat faceImage = faceDetector.extractFace(image, faceRect);
-            byte[] faceEncoding = faceRecognitionService.extractFaceEncoding(faceImage);
-
-            // Try to recognize the face
-            List<byte[]> storedEncodings = studentsWithFaces.stream()
-                    .map(Student::getFaceEncoding)
-                    .toList();
-
-            // Fetch config for threshold
-            var configOp = cameraConfigRepository.findByClassroomId(classroom.getId());
-            double threshold = configOp.map(com.attendance.model.CameraConfig::getRecognitionThreshold).orElse(0.6);
-
-            int matchIndex = faceRecognitionService.recognizeFace(faceEncoding, storedEncodings, threshold);
-
-            if (matchIndex >= 0) {
-                Student recognizedStudent = studentsWithFaces.get(matchIndex);
-
-                // Always update attendance logic now (remove the !isAttendanceMarkedToday
-                // check)
-                double confidence = faceRecognitionService.calculateConfidence(
-                        faceEncoding, recognizedStudent.getFaceEncoding());
-
-                Attendance attendance = markAttendance(recognizedStudent, classroom, confidence);
-                attendanceRecords.add(attendance);
+    public SummaryCounts finalizeLecture(Long classroomId, LocalDate date, int snapshots, LocalTime recordedAt) {
+        Map<Long, AttendanceState> before = attendanceBatchRepository.findStates(classroomId, date);
+        if (before.isEmpty()) {
+            return new SummaryCounts(date, classroomId, 0, 0, 0, 0);
+        }
 
-                log.info("Marked attendance for student: {} with confidence: {}",
-                        recognizedStudent.getStudentId(), confidence);
-            }
+        attendanceBatchRepository.finalizeStatuses(classroomId, date, snapshots);
+        List<StatusTransition> transitions = new ArrayList<>();
+        before.forEach((studentId, state) -> transitions.add(new StatusTransition(studentId, classroomId,
+                state.status(), AttendanceBatchRepository.statusFor(state.detections(), snapshots),
+                state.detections())));
+
+        LocalDate since = termCalendar.termOf(date).start();
+        List<Long> absentees = attendanceBatchRepository.findAbsentees(classroomId, date, since);
+        int inserted = attendanceBatchRepository.insertAbsent(classroomId, date, since, recordedAt);
+        if (inserted != absentees.size()) {
+            // A roster student was deleted or recorded in between; roll back and let the caller retry
+            throw new IllegalStateException(String.format(
+                    "Roster of classroom %d changed while finalizing %s (%d expected, %d inserted)",
+                    classroomId, date, absentees.size(), inserted));
         }
+        absentees.forEach(studentId -> transitions.add(
+                new StatusTransition(studentId, classroomId, null, AttendanceStatus.ABSENT, 0)));
+
+        dailySummaryService.record(date, transitions);
+        eventPublisher.publishEvent(new AttendanceChangedEvent(date, transitions, false));
 
-        return attendanceRecords;
+        Map<AttendanceStatus, Long> counts = transitions.stream()
+                .collect(Collectors.groupingBy(StatusTransition::current, Collectors.counting()));
+        return new SummaryCounts(date, classroomId, transitions.size(),
+                counts.getOrDefault(AttendanceStatus.PRESENT, 0L), counts.getOrDefault(AttendanceStatus.LATE, 0L),
+                counts.getOrDefault(AttendanceStatus.ABSENT, 0L));
     }
 
     /**
-     * Mark attendance for a student
+     * Delete all attendance of one day, before rebuilding it from detection events
      * 
-     * @param student         Student entity
-     * @param classroom       Classroom entity
-     * @param confidenceScore Face recognition confidence score
-     * @return Created attendance record
+     * @param date Attendance date
+     * @return Number of records deleted
      */
     @Transactional
-    public Attendance markAttendance(Student student, Classroom classroom, double confidenceScore) {
-        LocalDate today = LocalDate.now();
-        LocalTime now = LocalTime.now();
-
-        // Check for existing attendance
-        Attendance attendance = attendanceRepository
-                .findByStudentIdAndClassroomIdAndAttendanceDate(student.getId(), classroom.getId(), today)
-                .orElse(new Attendance());
-
-        if (attendance.getId() == null) {
-            // New record
-            attendance.setStudent(student);
-            attendance.setClassroom(classroom);
-            attendance.setAttendanceDate(today);
-            attendance.setCheckInTime(now); // First seen time
-            attendance.setDetectionCount(0);
-        }
-
-        // Increment detection count
-        int currentCount = attendance.getDetectionCount() != null ? attendance.getDetectionCount() : 0;
-        int newCount = currentCount + 1;
-        attendance.setDetectionCount(newCount);
-        attendance.setConfidenceScore(confidenceScore); // Update with latest confidence
-
-        // Update status based on scoring logic
-        updateAttendanceStatus(attendance, classroom);
-
-        Attendance savedAttendance = attendanceRepository.save(attendance);
-        log.info("Updated attendance for student {}: count={}, status={}",
-                student.getStudentId(), newCount, attendance.getStatus());
-
-        // Publish real-time update
-        try {
-            messagingTemplate.convertAndSend("/topic/attendance/" + classroom.getId(), savedAttendance);
-
-            // Also publish global stats update
-            AttendanceStats stats = getAttendanceStats(today);
-            messagingTemplate.convertAndSend("/topic/stats", stats);
-        } catch (Exception e) {
-            log.error("Failed to send real-time update", e);
-        }
-
-        return savedAttendance;
+    public int deleteAttendanceForDate(LocalDate date) {
+        int deleted = attendanceBatchRepository.deleteByDate(date);
+        dailySummaryService.clear(date);
+        eventPublisher.publishEvent(AttendanceChangedEvent.replaced(date));
+        return deleted;
     }
 
-    private void updateAttendanceStatus(Attendance attendance, Classroom classroom) {
-        var configOp = cameraConfigRepository.findByClassroomId(classroom.getId());
-        int totalSnapshots = configOp.map(com.attendance.model.CameraConfig::getSnapshotsPerLecture).orElse(4);
-
-        double percentage = (double) attendance.getDetectionCount() / totalSnapshots;
-
-        if (percentage >= 0.75) {
-            attendance.setStatus(AttendanceStatus.PRESENT);
-        } else if (percentage >= 0.50) {
-            attendance.setStatus(AttendanceStatus.LATE);
-        } else {
-            attendance.setStatus(AttendanceStatus.ABSENT); // Or generic "PROCESSING" status if desired
+    /**
+     * Get attendance records of the given students, with student and classroom loaded
+     * 
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @param studentIds  Student IDs
+     * @return List of attendance records
+     */
+    @Transactional(readOnly = true)
+    public List<Attendance> getAttendanceForStudents(Long classroomId, LocalDate date,
+            Collection<Long> studentIds) {
+        if (studentIds.isEmpty()) {
+            return List.of();
         }
+        return attendanceRepository.findWithDetailsForStudents(classroomId, date, studentIds);
     }
 
     /**
@@ -214,8 +203,12 @@ public class AttendanceService {
      * @return List of attendance records
      */
     @Transactional(readOnly = true)
-    public List<Attendance> getAttendanceByDateAndClassroom(LocalDate date, Long classroomId) {
-        return attendanceRepository.findByAttendanceDateAndClassroomId(date, classroomId);
+    public List<AttendanceRowDTO> getAttendanceByDateAndClassroom(LocalDate date, Long classroomId) {
+        if (date.equals(LocalDate.now())) {
+            // Today's list is a live view; a lagging replica would hide fresh check-ins
+            return ReplicaRouting.live(() -> attendanceRepository.findRowsByDateAndClassroom(date, classroomId));
+        }
+        return attendanceArchiveService.findRowsByDateAndClassroom(date, classroomId);
     }
 
     /**
@@ -225,28 +218,33 @@ public class AttendanceService {
      * @return List of attendance records
      */
     @Transactional(readOnly = true)
-    public List<Attendance> getTodayAttendance(Long classroomId) {
+    public List<AttendanceRowDTO> getTodayAttendance(Long classroomId) {
         return getAttendanceByDateAndClassroom(LocalDate.now(), classroomId);
     }
 
     /**
-     * Get attendance statistics for a date
+     * Get attendance statistics for a date. Today's are served from memory.
      * 
      * @param date Date
      * @return Map of statistics
      */
-    @Transactional(readOnly = true)
     public AttendanceStats getAttendanceStats(LocalDate date) {
-        long totalAttendance = attendanceRepository.countByDate(date);
-        long presentCount = attendanceRepository.countPresentByDate(date);
-
-        return new AttendanceStats(totalAttendance, presentCount);
+        return dailyAttendanceStats.getStats(date);
     }
 
     /**
      * Inner class for attendance statistics
      */
-    public record AttendanceStats(long total, long present) {
+    public record AttendanceStats(long total, long present, long late) {
+        public double getAttendanceRate() {
+            return total > 0 ? (double) present / total * 100 : 0.0;
+        }
+    }
+
+    /**
+     * Attendance counts of one student
+     */
+    public record StudentAttendanceStats(Long studentId, long total, long present, long late, long absent) {
         public double getAttendanceRate() {
             return total > 0 ? (double) present / total * 100 : 0.0;
         }
@@ -258,10 +256,36 @@ public class AttendanceService {
      * @param studentId Student ID
      * @return Statistics object
      */
-    @Transactional(readOnly = true)
     public AttendanceStats getStudentStats(Long studentId) {
-        long total = attendanceRepository.countByStudentId(studentId);
-        long present = attendanceRepository.countPresentByStudentId(studentId);
-        return new AttendanceStats(total, present);
+        StudentAttendanceStats stats = studentStatsCache.getForStudents(List.of(studentId)).get(0);
+        return new AttendanceStats(stats.total(), stats.present(), stats.late());
+    }
+
+    /**
+     * Get attendance statistics for many students at once: the given students,
+     * every student of a department, or every student with records in a
+     * classroom (counted within that classroom). Exactly one scope must be set.
+     * 
+     * @param studentIds  Student IDs
+     * @param department  Department
+     * @param classroomId Classroom ID
+     * @return Statistics per student
+     * @throws IllegalArgumentException if not exactly one scope is given
+     */
+    @Transactional(readOnly = true)
+    public List<StudentAttendanceStats> getStudentStats(Collection<Long> studentIds, String department,
+            Long classroomId) {
+        boolean byStudents = studentIds != null && !studentIds.isEmpty();
+        boolean byDepartment = department != null && !department.isBlank();
+        boolean byClassroom = classroomId != null;
+        if ((byStudents ? 1 : 0) + (byDepartment ? 1 : 0) + (byClassroom ? 1 : 0) != 1) {
+            throw new IllegalArgumentException("Specify exactly one of studentIds, department or classroomId");
+        }
+
+        if (byClassroom) {
+            return studentStatsCache.getForClassroom(classroomId);
+        }
+        return studentStatsCache.getForStudents(byStudents ? studentIds
+                : studentRepository.findIdsByDepartment(department));
     }
 }
@@ -1,36 +1,39 @@
 package com.attendance.service;
 
-import com.attendance.model.Attendance;
 import com.attendance.model.CameraConfig;
-
+import com.attendance.util.FaceDetector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
 import org.opencv.videoio.VideoCapture;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CameraService {
 
-    private final AttendanceService attendanceService;
+    private final FaceDetector faceDetector;
+
+    @Value("${camera.burst.frames:5}")
+    private int burstFrames;
+
+    @Value("${camera.burst.window-ms:1000}")
+    private long burstWindowMs;
+
+    @Value("${camera.burst.scoring-width:320}")
+    private int scoringWidth;
 
     /**
-     * Capture frame from active camera and process attendance
-     * 
-     * @param config Camera configuration
-     */
-    /**
-     * Capture frame from active camera and process attendance
+     * Capture the best frame of a short burst from an active camera
      * 
      * @param config Camera configuration
+     * @return Captured frame, or null if the camera is inactive or unreachable
      */
-    public void captureAndProcess(CameraConfig config) {
+    public Mat captureFrame(CameraConfig config) {
         if (!config.isActive()) {
-            return;
+            return null;
         }
 
         String fullUrl = constructUrl(config);
@@ -67,26 +70,21 @@ public class CameraService {
             if (!connected) {
                 log.error("Failed to connect to camera after {} attempts: {}", maxRetries,
                         config.getClassroom().getCourseCode());
-                return;
+                return null;
             }
 
-            Mat frame = new Mat();
-            if (capture.read(frame)) {
-                if (!frame.empty()) {
-                    List<Attendance> saved = attendanceService.processFaceProcessing(frame, config.getClassroom());
-                    if (!saved.isEmpty()) {
-                        log.info("Marked {} record(s) from camera stream for {}",
-                                saved.size(), config.getClassroom().getCourseCode());
-                    }
-                } else {
-                    log.warn("Captured empty frame from camera: {}", config.getClassroom().getCourseCode());
-                }
-            } else {
-                log.warn("Failed to read frame from camera: {}", config.getClassroom().getCourseCode());
+            Mat frame = captureBestFrame(capture, config.getClassroom().getCourseCode());
+            if (frame == null) {
+                log.warn("Failed to read a usable frame from camera: {}", config.getClassroom().getCourseCode());
             }
+            return frame;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
-            log.error("Error processing camera stream for {}", config.getClassroom().getCourseCode(), e);
+            log.error("Error reading camera stream for {}", config.getClassroom().getCourseCode(), e);
+            return null;
         } finally {
             if (capture.isOpened()) {
                 capture.release();
@@ -94,6 +92,59 @@ public class CameraService {
         }
     }
 
+    /**
+     * Grab a short burst of frames and keep only the best one. Frames are ranked
+     * by face count on a downscaled copy, then by sharpness, so a single blurred
+     * or occluded read does not cost a whole snapshot.
+     * 
+     * @param capture Opened video capture
+     * @param label   Camera label for logging
+     * @return Best frame, or null if no frame could be read
+     */
+    private Mat captureBestFrame(VideoCapture capture, String label) throws InterruptedException {
+        int frames = Math.max(1, burstFrames);
+        long gapMs = frames > 1 ? burstWindowMs / (frames - 1) : 0;
+
+        Mat best = null;
+        int bestFaces = -1;
+        double bestSharpness = -1;
+
+        for (int i = 0; i < frames; i++) {
+            if (i > 0 && gapMs > 0) {
+                Thread.sleep(gapMs);
+            }
+
+            Mat frame = new Mat();
+            if (!capture.read(frame) || frame.empty()) {
+                frame.release();
+                continue;
+            }
+
+            if (frames == 1) {
+                return frame;
+            }
+
+            int faces = faceDetector.countFacesDownscaled(frame, scoringWidth);
+            double sharpness = faceDetector.measureSharpness(frame, scoringWidth);
+
+            if (faces > bestFaces || (faces == bestFaces && sharpness > bestSharpness)) {
+                if (best != null) {
+                    best.release();
+                }
+                best = frame;
+                bestFaces = faces;
+                bestSharpness = sharpness;
+            } else {
+                frame.release();
+            }
+        }
+
+        if (best != null) {
+            log.debug("Selected burst frame for {}: faces={}, sharpness={}", label, bestFaces, bestSharpness);
+        }
+        return best;
+    }
+
     private String constructUrl(CameraConfig config) {
         String url = config.getRtspUrl();
         if (config.getUsername() != null && !config.getUsername().isEmpty() &&
@@ -0,0 +1,122 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.CameraConfig;
+import com.attendance.model.Classroom;
+import com.attendance.repository.CameraConfigRepository;
+import com.attendance.repository.ClassroomRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of camera configs and classrooms for the recognition hot
+ * path. All camera configs are loaded together, with their classroom, in one
+ * query; classrooms are loaded by id on first use. Entries stay until
+ * {@link #invalidate} is called, which the settings screen does on every
+ * change.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClassroomConfigCache {
+
+    /** Used when a classroom has no camera config */
+    public static final double DEFAULT_RECOGNITION_THRESHOLD = 0.6;
+    public static final int DEFAULT_SNAPSHOTS_PER_LECTURE = 4;
+
+    private final CameraConfigRepository cameraConfigRepository;
+    private final ClassroomRepository classroomRepository;
+
+    private record ConfigSnapshot(List<CameraConfig> all, Map<Long, CameraConfig> byClassroomId) {
+    }
+
+    private volatile ConfigSnapshot configs;
+    private final Map<Long, Optional<Classroom>> classrooms = new ConcurrentHashMap<>();
+
+    // Keeps a load that raced with an invalidation out of the cache
+    private final GenerationGuard guard = new GenerationGuard();
+
+    /**
+     * @return All camera configs, with classroom loaded
+     */
+    public List<CameraConfig> getAllCameraConfigs() {
+        return configSnapshot().all();
+    }
+
+    /**
+     * @param classroomId Classroom ID
+     * @return Camera config of the classroom, with classroom loaded
+     */
+    public Optional<CameraConfig> getCameraConfig(Long classroomId) {
+        return Optional.ofNullable(configSnapshot().byClassroomId().get(classroomId));
+    }
+
+    public double getRecognitionThreshold(Long classroomId) {
+        return getCameraConfig(classroomId)
+                .map(CameraConfig::getRecognitionThreshold)
+                .orElse(DEFAULT_RECOGNITION_THRESHOLD);
+    }
+
+    public int getSnapshotsPerLecture(Long classroomId) {
+        return getCameraConfig(classroomId)
+                .map(CameraConfig::getSnapshotsPerLecture)
+                .orElse(DEFAULT_SNAPSHOTS_PER_LECTURE);
+    }
+
+    /**
+     * @param classroomId Classroom ID
+     * @return Classroom, if it exists
+     */
+    public Optional<Classroom> getClassroom(Long classroomId) {
+        Optional<Classroom> cached = classrooms.get(classroomId);
+        if (cached != null) {
+            return cached;
+        }
+
+        return guard.load(() -> ReplicaRouting.onPrimary(() -> classroomRepository.findById(classroomId)),
+                loaded -> {
+                    // Misses are not cached, so bad IDs cannot grow the map
+                    if (loaded.isPresent()) {
+                        classrooms.putIfAbsent(classroomId, loaded);
+                    }
+                });
+    }
+
+    public boolean classroomExists(Long classroomId) {
+        return getClassroom(classroomId).isPresent();
+    }
+
+    /**
+     * Drop all cached configs and classrooms. Call after any change to a
+     * camera config or classroom.
+     */
+    public void invalidate() {
+        guard.invalidate(() -> {
+            configs = null;
+            classrooms.clear();
+        });
+        log.debug("Classroom and camera config cache invalidated");
+    }
+
+    private ConfigSnapshot configSnapshot() {
+        ConfigSnapshot snapshot = configs;
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        return guard.load(() -> {
+            List<CameraConfig> all = List.copyOf(
+                    ReplicaRouting.onPrimary(cameraConfigRepository::findAllWithClassroom));
+            return new ConfigSnapshot(all, all.stream()
+                    .collect(Collectors.toUnmodifiableMap(c -> c.getClassroom().getId(), Function.identity())));
+        }, loaded -> configs = loaded);
+    }
+}
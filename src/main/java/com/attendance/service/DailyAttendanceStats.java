@@ -0,0 +1,111 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Today's attendance totals, kept in memory and updated from the status
+ * transitions of every committed write instead of re-counting the table.
+ * Seeded from the daily summary at startup and again when the date rolls
+ * over. Other dates are read from the summary on demand.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DailyAttendanceStats {
+
+    private final DailySummaryService dailySummaryService;
+
+    private LocalDate date;
+    private long total;
+    private final Map<AttendanceStatus, Long> byStatus = new EnumMap<>(AttendanceStatus.class);
+
+    @PostConstruct
+    public void init() {
+        seed(LocalDate.now());
+    }
+
+    /**
+     * Get statistics for a date. O(1) for today.
+     *
+     * @param requested Date
+     * @return Attendance statistics
+     */
+    public AttendanceService.AttendanceStats getStats(LocalDate requested) {
+        synchronized (this) {
+            LocalDate today = LocalDate.now();
+            if (requested.equals(today)) {
+                if (!today.equals(date)) {
+                    seed(today);
+                }
+                return toStats(total, byStatus);
+            }
+        }
+        return count(requested);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onAttendanceChanged(AttendanceChangedEvent event) {
+        if (!event.date().equals(LocalDate.now())) {
+            return;
+        }
+        if (!event.date().equals(date) || event.replaced()) {
+            // The seed query already sees this committed change
+            seed(event.date());
+            return;
+        }
+
+        for (StatusTransition transition : event.transitions()) {
+            if (!transition.statusChanged()) {
+                continue;
+            }
+            if (transition.previous() == null) {
+                total++;
+            } else {
+                byStatus.merge(transition.previous(), -1L, Long::sum);
+            }
+            byStatus.merge(transition.current(), 1L, Long::sum);
+        }
+    }
+
+    private void seed(LocalDate day) {
+        Map<AttendanceStatus, Long> counts = ReplicaRouting.onPrimary(() -> countByStatus(day));
+        byStatus.clear();
+        byStatus.putAll(counts);
+        total = counts.values().stream().mapToLong(Long::longValue).sum();
+        date = day;
+        log.debug("Seeded attendance statistics for {}: {} record(s)", day, total);
+    }
+
+    private AttendanceService.AttendanceStats count(LocalDate day) {
+        Map<AttendanceStatus, Long> counts = countByStatus(day);
+        return toStats(counts.values().stream().mapToLong(Long::longValue).sum(), counts);
+    }
+
+    private Map<AttendanceStatus, Long> countByStatus(LocalDate day) {
+        SummaryCounts totals = dailySummaryService.getTotals(day);
+        Map<AttendanceStatus, Long> counts = new EnumMap<>(AttendanceStatus.class);
+        counts.put(AttendanceStatus.PRESENT, totals.present());
+        counts.put(AttendanceStatus.LATE, totals.late());
+        counts.put(AttendanceStatus.ABSENT, totals.absent());
+        return counts;
+    }
+
+    private static AttendanceService.AttendanceStats toStats(long total, Map<AttendanceStatus, Long> counts) {
+        return new AttendanceService.AttendanceStats(total,
+                counts.getOrDefault(AttendanceStatus.PRESENT, 0L),
+                counts.getOrDefault(AttendanceStatus.LATE, 0L));
+    }
+}
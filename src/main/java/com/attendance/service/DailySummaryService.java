@@ -0,0 +1,198 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.repository.DailySummaryRepository;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import com.attendance.repository.StudentPurgeRepository.RemovedRecord;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps daily_attendance_summary in step with the attendance records.
+ * The attendance writer passes every status transition in its own
+ * transaction; a nightly reconciliation compares recent days against the
+ * records and rebuilds any that drifted. An empty summary table is filled
+ * from the records at startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory")
+public class DailySummaryService {
+
+    private final DailySummaryRepository dailySummaryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${attendance.summary.reconcile-days:7}")
+    private int reconcileDays;
+
+    /**
+     * Reconciliation result
+     *
+     * @param daysChecked  Days compared against the records
+     * @param daysRepaired Days whose counts differed and were rebuilt
+     */
+    public record ReconcileResult(long daysChecked, int daysRepaired) {
+    }
+
+    @PostConstruct
+    public void backfill() {
+        if (!dailySummaryRepository.isEmpty()) {
+            return;
+        }
+        LocalDate first = dailySummaryRepository.findFirstAttendanceDate();
+        if (first == null) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        int rows = 0;
+        for (LocalDate date = first; !date.isAfter(today); date = date.plusDays(1)) {
+            LocalDate day = date;
+            rows += transactionTemplate.execute(status -> dailySummaryRepository.rebuildDate(day));
+        }
+        log.info("Filled daily attendance summary from records since {}: {} row(s)", first, rows);
+    }
+
+    /**
+     * Apply the status transitions of one day. Must be called in the
+     * transaction that wrote them.
+     *
+     * @param date        Attendance date
+     * @param transitions Changed records
+     */
+    public void record(LocalDate date, Collection<StatusTransition> transitions) {
+        Map<Long, long[]> byClassroom = new HashMap<>();
+        for (StatusTransition transition : transitions) {
+            if (!transition.statusChanged()) {
+                continue;
+            }
+            // total, present, late, absent
+            long[] delta = byClassroom.computeIfAbsent(transition.classroomId(), id -> new long[4]);
+            if (transition.previous() == null) {
+                delta[0]++;
+            } else {
+                delta[slot(transition.previous())]--;
+            }
+            delta[slot(transition.current())]++;
+        }
+
+        List<SummaryCounts> deltas = new ArrayList<>();
+        byClassroom.forEach((classroomId, delta) -> deltas.add(
+                new SummaryCounts(date, classroomId, delta[0], delta[1], delta[2], delta[3])));
+        dailySummaryRepository.increment(deltas.stream().filter(d -> !d.isZero()).toList());
+    }
+
+    /**
+     * Subtract deleted records, live or archived. Must be called in the
+     * transaction that deleted them.
+     *
+     * @param records Deleted records
+     */
+    public void forget(Collection<RemovedRecord> records) {
+        Map<Map.Entry<LocalDate, Long>, long[]> byDay = new HashMap<>();
+        for (RemovedRecord record : records) {
+            long[] delta = byDay.computeIfAbsent(Map.entry(record.date(), record.classroomId()), key -> new long[4]);
+            delta[0]--;
+            delta[slot(record.status())]--;
+        }
+
+        List<SummaryCounts> deltas = new ArrayList<>();
+        byDay.forEach((key, delta) -> deltas.add(
+                new SummaryCounts(key.getKey(), key.getValue(), delta[0], delta[1], delta[2], delta[3])));
+        dailySummaryRepository.increment(deltas);
+    }
+
+    /**
+     * Drop one day, when all of its records are deleted. Must be called in
+     * the transaction that deleted them.
+     *
+     * @param date Attendance date
+     */
+    public void clear(LocalDate date) {
+        dailySummaryRepository.deleteByDate(date);
+    }
+
+    /**
+     * Totals of one day over all classrooms
+     *
+     * @param date Attendance date
+     * @return Counts with a null classroom
+     */
+    public SummaryCounts getTotals(LocalDate date) {
+        return dailySummaryRepository.sumForDate(date);
+    }
+
+    @Scheduled(cron = "${attendance.summary.reconcile-cron:0 15 2 * * *}")
+    public void scheduledReconcile() {
+        try {
+            LocalDate today = LocalDate.now();
+            ReconcileResult result = reconcile(today.minusDays(reconcileDays), today);
+            log.info("Daily summary reconciliation: {} day(s) checked, {} repaired",
+                    result.daysChecked(), result.daysRepaired());
+        } catch (Exception e) {
+            log.error("Daily summary reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Compare a date range against the attendance records and rebuild every
+     * day that differs, one transaction per day
+     *
+     * @param from First date
+     * @param to   Last date
+     * @return Days checked and repaired
+     * @throws IllegalArgumentException if from is after to
+     */
+    public ReconcileResult reconcile(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+
+        Map<Map.Entry<LocalDate, Long>, SummaryCounts> stored = dailySummaryRepository.findRange(from, to);
+        Map<Map.Entry<LocalDate, Long>, SummaryCounts> expected = dailySummaryRepository.countRecords(from, to);
+
+        Set<LocalDate> drifted = new TreeSet<>();
+        expected.forEach((key, counts) -> {
+            if (!counts.equals(stored.get(key))) {
+                drifted.add(key.getKey());
+            }
+        });
+        stored.forEach((key, counts) -> {
+            if (!expected.containsKey(key) && !counts.isZero()) {
+                drifted.add(key.getKey());
+            }
+        });
+
+        for (LocalDate date : drifted) {
+            transactionTemplate.executeWithoutResult(status -> dailySummaryRepository.rebuildDate(date));
+            log.warn("Daily attendance summary of {} had drifted and was rebuilt", date);
+        }
+        return new ReconcileResult(ChronoUnit.DAYS.between(from, to) + 1, drifted.size());
+    }
+
+    private static int slot(AttendanceStatus status) {
+        return switch (status) {
+            case PRESENT -> 1;
+            case LATE -> 2;
+            case ABSENT -> 3;
+        };
+    }
+}
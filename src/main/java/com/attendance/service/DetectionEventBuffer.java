@@ -0,0 +1,135 @@
+package com.attendance.service;
+
+import com.attendance.pipeline.Recognition;
+import com.attendance.repository.DetectionEventRepository.Detection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind buffer for background detections. Camera snapshots are held in
+ * memory and appended to the detection event log as one large batch on a
+ * fixed interval, at lecture end and on shutdown, instead of one insert per
+ * frame. Every detection is journaled locally first so nothing is lost if the
+ * process dies between flushes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DetectionEventBuffer {
+
+    private final DetectionEventService detectionEventService;
+
+    @Value("${attendance.write-behind.journal-dir:data/journal}")
+    private String journalDir;
+
+    @Value("${attendance.write-behind.journal-sync:false}")
+    private boolean journalSync;
+
+    private final Object lock = new Object();
+    private List<Detection> pending = new ArrayList<>();
+    private DetectionJournal journal;
+
+    @PostConstruct
+    public void init() throws IOException {
+        long committed = detectionEventService.getFlushedJournalSegment();
+        journal = new DetectionJournal(Paths.get(journalDir), journalSync, committed);
+        // Segments up to the committed one were appended but not deleted
+        journal.deleteBefore(committed + 1);
+        int replayed = journal.replay(committed, pending::add);
+        if (replayed > 0) {
+            log.info("Replayed {} unflushed detection(s) from journal, flushing now", replayed);
+            flush();
+        }
+    }
+
+    /**
+     * Record the recognitions of one frame. They are journaled, then held in
+     * memory until the next flush.
+     *
+     * @param classroomId  Classroom ID
+     * @param recognitions Students recognized in the frame
+     */
+    public void record(Long classroomId, List<Recognition> recognitions) {
+        List<Detection> detections = DetectionEventService.toDetections(classroomId, recognitions);
+
+        synchronized (lock) {
+            try {
+                journal.append(detections);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to journal detections", e);
+            }
+            pending.addAll(detections);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.write-behind.flush-interval-ms:15000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Write-behind flush failed, will retry on next interval", e);
+        }
+    }
+
+    /**
+     * Append everything buffered so far to the event log, recording the
+     * journal segments they came from as committed. On failure the
+     * detections are put back and their journal segments are kept for the
+     * next attempt.
+     */
+    public void flush() {
+        List<Detection> batch;
+        long liveSegment;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            try {
+                liveSegment = journal.rotate();
+            } catch (IOException e) {
+                pending.addAll(0, batch);
+                throw new UncheckedIOException("Failed to rotate detection journal", e);
+            }
+        }
+
+        try {
+            detectionEventService.append(batch, liveSegment - 1);
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                // Keep event order: the failed batch is older than anything buffered since
+                pending.addAll(0, batch);
+            }
+            throw e;
+        }
+
+        try {
+            journal.deleteBefore(liveSegment);
+        } catch (IOException e) {
+            // Harmless: the segments are recorded as committed, so they are skipped and deleted later
+            log.warn("Flushed detections but could not delete old journal segments", e);
+        }
+        log.info("Appended {} buffered detection(s) to the event log", batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        try {
+            flush();
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.attendance.service;
+
+import com.attendance.model.Classroom;
+import com.attendance.model.LectureSession;
+import com.attendance.pipeline.Recognition;
+import com.attendance.repository.AttendanceBatchRepository.AttendanceDelta;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import com.attendance.repository.DetectionEventRepository;
+import com.attendance.repository.DetectionEventRepository.Detection;
+import com.attendance.repository.LectureSessionRepository;
+import com.attendance.repository.StudentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Owns the append-only detection event log and the attendance rollup built
+ * from it. Detections are only ever inserted; a background job folds new
+ * events into the attendance table past a watermark, advancing the watermark
+ * in the same transaction so every event is counted exactly once. Any day can
+ * be rebuilt from its events. Uploads, whose callers wait for the result,
+ * apply their own events as they append them instead; the rollup skips
+ * those.
+ * <p>
+ * Rolled-up records keep a provisional status until their lecture is
+ * finalized, measured against the camera snapshots actually analysed while
+ * it ran. Records arriving for a finalized lecture, or for an earlier day,
+ * are finalized in the same transaction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DetectionEventService {
+
+    /**
+     * Progress of the rollup: events written vs. events folded into attendance
+     */
+    public record RollupStatus(long lastEventId, long rolledUpEventId, long pendingEvents) {
+    }
+
+    private static final String WATERMARK = "attendance";
+    // Last local journal segment whose detections are in the event log
+    private static final String JOURNAL_WATERMARK = "detection-journal";
+
+    private final DetectionEventRepository detectionEventRepository;
+    private final LectureSessionRepository lectureSessionRepository;
+    private final StudentRepository studentRepository;
+    private final AttendanceService attendanceService;
+    private final AttendanceArchiveService attendanceArchiveService;
+    private final ClassroomConfigCache classroomConfigCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${attendance.rollup.batch-size:5000}")
+    private int batchSize;
+
+    /*
+     * Appends hold this lock until their transaction commits, so an event ID
+     * read under it has no uncommitted lower IDs behind it. Without this, the
+     * rollup could move its watermark past an event that commits later.
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock rollupLock = new ReentrantLock();
+
+    private record Key(Long studentId, Long classroomId, LocalDate date) {
+    }
+
+    private record Lecture(Long classroomId, LocalDate date) {
+    }
+
+    /**
+     * Turn the recognitions of one frame into detection events. A student
+     * seen twice in the same frame counts once, with the best match.
+     *
+     * @param classroomId  Classroom ID
+     * @param recognitions Students recognized in the frame
+     * @return One detection per recognized student
+     */
+    public static List<Detection> toDetections(Long classroomId, List<Recognition> recognitions) {
+        LocalDate today = LocalDate.now();
+        LocalTime now = LocalTime.now();
+
+        Map<Long, Double> bestPerStudent = new LinkedHashMap<>();
+        for (Recognition recognition : recognitions) {
+            bestPerStudent.merge(recognition.student().getId(), recognition.confidence(), Math::max);
+        }
+        return bestPerStudent.entrySet().stream()
+                .map(e -> new Detection(e.getKey(), classroomId, today, now, e.getValue()))
+                .toList();
+    }
+
+    /**
+     * Append detections to the event log in one committed batch
+     *
+     * @param detections Detections to append
+     */
+    public void append(List<Detection> detections) {
+        if (detections.isEmpty()) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> detectionEventRepository.insertAll(detections));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Append the detections of one upload and apply them to attendance in
+     * the same transaction, without waiting for a rollup, rebuild or
+     * finalization. The events are stored as applied, so the rollup skips
+     * them; a rebuild still counts them. An upload for a lecture that is
+     * already settled, finalized or of an earlier day, is appended and
+     * rolled up instead, which finalizes its records.
+     *
+     * @param detections Detections to apply
+     */
+    public void appendAndApply(List<Detection> detections) {
+        if (detections.isEmpty()) {
+            return;
+        }
+        Boolean applied = transactionTemplate.execute(status -> {
+            // A student removal locks its students before the last sweep, so it finds what is written here
+            Set<Long> existing = new HashSet<>(studentRepository.lockExistingIds(
+                    detections.stream().map(Detection::studentId).distinct().toList()));
+            List<Detection> current = detections.stream().filter(d -> existing.contains(d.studentId())).toList();
+
+            // Held until commit, so the lecture cannot be finalized past the new records
+            LocalDate today = LocalDate.now();
+            Set<Lecture> lectures = new LinkedHashSet<>();
+            current.forEach(detection -> lectures.add(new Lecture(detection.classroomId(), detection.date())));
+            for (Lecture lecture : lectures) {
+                LectureSession session = lectureSessionRepository.lock(lecture.classroomId(), lecture.date(),
+                        classroomConfigCache.getSnapshotsPerLecture(lecture.classroomId()));
+                if (lecture.date().isBefore(today) || session.getStatus() == LectureSession.Status.FINALIZED) {
+                    return false;
+                }
+            }
+
+            detectionEventRepository.insertAll(current, true);
+            Map<Key, Accumulator> pending = new LinkedHashMap<>();
+            current.forEach(detection -> accumulate(pending, detection));
+            attendanceService.applyDeltas(toDeltas(pending));
+            return true;
+        });
+        if (!Boolean.TRUE.equals(applied)) {
+            append(detections);
+            rollUp();
+        }
+    }
+
+    /**
+     * Append detections replayed or buffered from the local journal, and
+     * record in the same transaction that every segment up to the given one
+     * is in the event log, so those segments are never appended twice
+     *
+     * @param detections     Detections to append
+     * @param journalSegment Last journal segment the detections were read from
+     */
+    public void append(List<Detection> detections, long journalSegment) {
+        appendLock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!detections.isEmpty()) {
+                    detectionEventRepository.insertAll(detections);
+                }
+                detectionEventRepository.lockWatermark(JOURNAL_WATERMARK);
+                detectionEventRepository.updateWatermark(JOURNAL_WATERMARK, journalSegment);
+            });
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return Last local journal segment whose detections are in the event log, 0 if none
+     */
+    public long getFlushedJournalSegment() {
+        return detectionEventRepository.findWatermark(JOURNAL_WATERMARK);
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.rollup.interval-ms:5000}")
+    public void scheduledRollUp() {
+        try {
+            rollUp();
+        } catch (Exception e) {
+            log.error("Attendance rollup failed, will retry on next interval", e);
+        }
+    }
+
+    /**
+     * Fold every committed event past the watermark into the attendance
+     * table, in transactions of at most attendance.rollup.batch-size events.
+     * Each commit publishes an {@link AttendanceChangedEvent}.
+     *
+     * @return Number of events rolled up
+     */
+    public int rollUp() {
+        long highWater = committedHighWater();
+        int[] total = { 0 };
+
+        rollupLock.lock();
+        try {
+            Long reached;
+            do {
+                reached = transactionTemplate.execute(status -> {
+                    long watermark = detectionEventRepository.lockWatermark(WATERMARK);
+                    if (watermark >= highWater) {
+                        return null;
+                    }
+                    long upTo = Math.min(highWater, watermark + batchSize);
+
+                    Map<Key, Accumulator> pending = new LinkedHashMap<>();
+                    detectionEventRepository.forEachInRange(watermark, upTo, detection -> {
+                        accumulate(pending, detection);
+                        total[0]++;
+                    });
+                    List<AttendanceDelta> deltas = toDeltas(pending);
+                    attendanceService.applyDeltas(deltas);
+                    finalizeSettled(deltas);
+                    detectionEventRepository.updateWatermark(WATERMARK, upTo);
+                    return upTo;
+                });
+            } while (reached != null);
+        } finally {
+            rollupLock.unlock();
+        }
+
+        if (total[0] > 0) {
+            log.debug("Rolled up {} detection event(s) into attendance", total[0]);
+        }
+        return total[0];
+    }
+
+    /**
+     * Recompute one day's attendance from its detection events. Events not
+     * yet rolled up are left to the next rollup; applied upload events are
+     * counted either way. Days recorded before the event log existed have no
+     * events and come back empty.
+     *
+     * @param date Attendance date
+     * @return Number of attendance rows written
+     * @throws IllegalArgumentException if the date is in an archived term
+     */
+    public int rebuild(LocalDate date) {
+        if (attendanceArchiveService.covers(date)) {
+            throw new IllegalArgumentException("Attendance of " + date + " is archived");
+        }
+        rollupLock.lock();
+        try {
+            Integer rows = transactionTemplate.execute(status -> {
+                long watermark = detectionEventRepository.lockWatermark(WATERMARK);
+                int deleted = attendanceService.deleteAttendanceForDate(date);
+
+                Map<Key, Accumulator> pending = new LinkedHashMap<>();
+                detectionEventRepository.forEachOnDate(date, watermark, detection -> accumulate(pending, detection));
+                List<AttendanceDelta> deltas = toDeltas(pending);
+                attendanceService.applyDeltas(deltas);
+
+                // Finalized lectures get their statuses and ABSENT records back; so does every lecture of a past day
+                Set<Long> classrooms = new LinkedHashSet<>(lectureSessionRepository.findFinalizedClassrooms(date));
+                if (date.isBefore(LocalDate.now())) {
+                    deltas.forEach(delta -> classrooms.add(delta.classroomId()));
+                }
+                classrooms.forEach(classroomId -> finalizeLocked(classroomId, date));
+
+                log.info("Rebuilt attendance for {}: replaced {} row(s) with {} from detection events",
+                        date, deleted, deltas.size());
+                return deltas.size();
+            });
+            return rows != null ? rows : 0;
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    /**
+     * Count a camera snapshot analysed for a classroom, if taken while its
+     * lecture runs. Final statuses are measured against these.
+     *
+     * @param classroomId Classroom ID
+     */
+    public void recordSnapshot(Long classroomId) {
+        Classroom classroom = classroomConfigCache.getClassroom(classroomId).orElse(null);
+        LocalTime now = LocalTime.now();
+        if (classroom == null || now.isBefore(classroom.getStartTime()) || now.isAfter(classroom.getEndTime())) {
+            return;
+        }
+        lectureSessionRepository.addSnapshot(classroomId, LocalDate.now(),
+                classroomConfigCache.getSnapshotsPerLecture(classroomId));
+    }
+
+    /**
+     * @param date Lecture date
+     * @return Lectures of the day, ordered by classroom
+     */
+    public List<LectureSession> getLectureSessions(LocalDate date) {
+        return lectureSessionRepository.findByDate(date);
+    }
+
+    /**
+     * @param date         Lecture date
+     * @param classroomIds Classroom IDs
+     * @return Those of the classrooms whose lecture on the day is not finalized
+     */
+    public List<Long> findUnfinalized(LocalDate date, Collection<Long> classroomIds) {
+        Set<Long> finalized = new HashSet<>(lectureSessionRepository.findFinalizedClassrooms(date));
+        return classroomIds.stream().filter(id -> !finalized.contains(id)).toList();
+    }
+
+    /**
+     * Finalize the lecture of a classroom on a day: settle the status of
+     * every record and record the roster's absentees. Events not yet rolled
+     * up are finalized when they are. Finalizing a lecture again settles
+     * records added since.
+     *
+     * @param classroomId Classroom ID
+     * @param date        Lecture date
+     * @return The finalized session
+     * @throws IllegalArgumentException if the classroom is unknown, or the
+     *                                  date is in the future or archived
+     */
+    public LectureSession finalizeLecture(Long classroomId, LocalDate date) {
+        if (!classroomConfigCache.classroomExists(classroomId)) {
+            throw new IllegalArgumentException("Classroom not found: " + classroomId);
+        }
+        if (date.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Cannot finalize a lecture in the future");
+        }
+        if (attendanceArchiveService.covers(date)) {
+            throw new IllegalArgumentException("Attendance of " + date + " is archived");
+        }
+        rollupLock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                detectionEventRepository.lockWatermark(WATERMARK);
+                return finalizeLocked(classroomId, date);
+            });
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    /**
+     * Run an action while no rollup, rebuild or finalization is running, for
+     * writes that must not interleave with one
+     *
+     * @param action Action to run
+     * @return What the action returned
+     */
+    public <T> T whileRollupPaused(Supplier<T> action) {
+        rollupLock.lock();
+        try {
+            return action.get();
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    public RollupStatus getStatus() {
+        long last = detectionEventRepository.findMaxId();
+        long rolled = detectionEventRepository.findWatermark(WATERMARK);
+        return new RollupStatus(last, rolled, Math.max(0, last - rolled));
+    }
+
+    private long committedHighWater() {
+        appendLock.lock();
+        try {
+            return detectionEventRepository.findMaxId();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Finalize the lectures a rollup batch touched that are already settled:
+     * finalized ones, and those of earlier days
+     */
+    private void finalizeSettled(List<AttendanceDelta> deltas) {
+        LocalDate today = LocalDate.now();
+        Set<Lecture> lectures = new LinkedHashSet<>();
+        deltas.forEach(delta -> lectures.add(new Lecture(delta.classroomId(), delta.date())));
+        for (Lecture lecture : lectures) {
+            if (lecture.date().isBefore(today)
+                    || lectureSessionRepository.isFinalized(lecture.classroomId(), lecture.date())) {
+                finalizeLocked(lecture.classroomId(), lecture.date());
+            }
+        }
+    }
+
+    // Runs in a transaction holding the watermark lock, so no rollup writes the lecture meanwhile
+    private LectureSession finalizeLocked(Long classroomId, LocalDate date) {
+        LectureSession session = lectureSessionRepository.lock(classroomId, date,
+                classroomConfigCache.getSnapshotsPerLecture(classroomId));
+        LocalTime recordedAt = classroomConfigCache.getClassroom(classroomId)
+                .map(Classroom::getEndTime)
+                .orElse(LocalTime.MIDNIGHT);
+
+        SummaryCounts counts = attendanceService.finalizeLecture(classroomId, date,
+                session.getEffectiveSnapshots(), recordedAt);
+        session.setFinalizedAt(lectureSessionRepository.markFinalized(session.getId(), counts));
+        session.setStatus(LectureSession.Status.FINALIZED);
+        session.setPresent(counts.present());
+        session.setLate(counts.late());
+        session.setAbsent(counts.absent());
+        log.info("Finalized lecture of classroom {} on {} over {} snapshot(s): {} present, {} late, {} absent",
+                classroomId, date, session.getEffectiveSnapshots(), counts.present(), counts.late(),
+                counts.absent());
+        return session;
+    }
+
+    private static void accumulate(Map<Key, Accumulator> pending, Detection detection) {
+        pending.computeIfAbsent(new Key(detection.studentId(), detection.classroomId(), detection.date()),
+                k -> new Accumulator()).add(detection);
+    }
+
+    private static List<AttendanceDelta> toDeltas(Map<Key, Accumulator> pending) {
+        List<AttendanceDelta> deltas = new ArrayList<>(pending.size());
+        pending.forEach((key, acc) -> deltas.add(new AttendanceDelta(key.studentId(), key.classroomId(),
+                key.date(), acc.firstSeen, acc.lastConfidence, acc.maxConfidence, acc.detections)));
+        return deltas;
+    }
+
+    /**
+     * Running totals for one (student, classroom, date). Events arrive in ID
+     * order, so the last one seen carries the latest confidence.
+     */
+    private static final class Accumulator {
+        private int detections;
+        private double lastConfidence;
+        private double maxConfidence;
+        private LocalTime firstSeen;
+
+        private void add(Detection detection) {
+            detections++;
+            lastConfidence = detection.confidence();
+            maxConfidence = Math.max(maxConfidence, detection.confidence());
+            if (firstSeen == null || detection.seenAt().isBefore(firstSeen)) {
+                firstSeen = detection.seenAt();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.attendance.service;
+
+import com.attendance.repository.DetectionEventRepository.Detection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local journal of detections that have not yet been written to
+ * the detection event log. The journal is split into numbered segments: a flush rotates
+ * to a new segment and deletes the old ones once the data is committed, so
+ * anything left on disk after a crash is replayed on startup. Segment numbers
+ * only grow, so the last committed segment can be recorded with the data and
+ * a segment that outlived its commit is skipped instead of replayed.
+ */
+@Slf4j
+public class DetectionJournal implements AutoCloseable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("detections-(\\d+)\\.journal");
+
+    private final Path directory;
+    private final boolean sync;
+    private long currentSegment;
+    private FileChannel channel;
+    private BufferedWriter writer;
+
+    /**
+     * @param directory        Journal directory, created if missing
+     * @param sync             Force every append to disk
+     * @param committedSegment Last segment known to be committed; new segments are numbered past it
+     */
+    public DetectionJournal(Path directory, boolean sync, long committedSegment) throws IOException {
+        this.directory = directory;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        long lastOnDisk = listSegments().stream().mapToLong(this::segmentNumber).max().orElse(0);
+        currentSegment = Math.max(lastOnDisk, committedSegment) + 1;
+        open();
+    }
+
+    /**
+     * Replay every segment on disk that is newer than the last committed one
+     *
+     * @param committedSegment Last segment whose entries are already committed
+     * @param consumer         Receives each journaled entry
+     * @return Number of entries replayed
+     */
+    public synchronized int replay(long committedSegment, Consumer<Detection> consumer) throws IOException {
+        int count = 0;
+        for (Path segment : listSegments()) {
+            long number = segmentNumber(segment);
+            if (number <= committedSegment || number == currentSegment) {
+                continue;
+            }
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    consumer.accept(parse(line));
+                    count++;
+                } catch (RuntimeException e) {
+                    // A torn last line from a crash; everything before it is intact
+                    log.warn("Skipping unreadable journal line in {}: {}", segment.getFileName(), line);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Append entries and flush them to the OS (and to disk if sync is enabled)
+     *
+     * @param entries Entries to append
+     */
+    public synchronized void append(List<Detection> entries) throws IOException {
+        for (Detection entry : entries) {
+            writer.write(toLine(entry));
+            writer.newLine();
+        }
+        writer.flush();
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Start a new segment. Everything journaled so far is in older segments.
+     *
+     * @return Number of the first segment that is still live
+     */
+    public synchronized long rotate() throws IOException {
+        close();
+        currentSegment++;
+        open();
+        return currentSegment;
+    }
+
+    /**
+     * Delete all segments older than the given one, after their data has
+     * been committed
+     *
+     * @param liveSegment Number returned by {@link #rotate()}
+     */
+    public synchronized void deleteBefore(long liveSegment) throws IOException {
+        for (Path segment : listSegments()) {
+            if (segmentNumber(segment) < liveSegment) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            channel = null;
+        }
+    }
+
+    private static String toLine(Detection d) {
+        return d.studentId() + "," + d.classroomId() + "," + d.date() + "," + d.seenAt() + "," + d.confidence();
+    }
+
+    private static Detection parse(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed journal line: " + line);
+        }
+        return new Detection(Long.valueOf(parts[0]), Long.valueOf(parts[1]), LocalDate.parse(parts[2]),
+                LocalTime.parse(parts[3]), Double.parseDouble(parts[4]));
+    }
+
+    private void open() throws IOException {
+        Path segment = directory.resolve("detections-" + currentSegment + ".journal");
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private long segmentNumber(Path segment) {
+        Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
@@ -1,55 +1,335 @@
 package com.attendance.service;
 
-import com.attendance.model.Attendance;
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.Classroom;
+import com.attendance.repository.ClassroomRepository;
 import com.attendance.util.ExcelGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
- * Service for Excel export operations
+ * Service for Excel export operations. Range exports build one file per
+ * classroom in parallel on a bounded pool, or one workbook with a sheet per
+ * classroom; either way rows are streamed so memory stays flat however long
+ * the range.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ExcelExportService {
 
-    private final AttendanceService attendanceService;
+    /**
+     * Output of a date-range export
+     */
+    public enum RangeFormat {
+        /** One .xlsx per classroom, built in parallel and streamed as a ZIP */
+        ZIP,
+        /** One .xlsx with a sheet per classroom, built sequentially */
+        WORKBOOK;
+
+        /**
+         * @param format "zip" or "xlsx"
+         * @return Matching format
+         * @throws IllegalArgumentException for anything else
+         */
+        public static RangeFormat parse(String format) {
+            return switch (format.toLowerCase()) {
+                case "zip" -> ZIP;
+                case "xlsx" -> WORKBOOK;
+                default -> throw new IllegalArgumentException("Unknown export format: " + format);
+            };
+        }
+
+        public String getExtension() {
+            return this == ZIP ? "zip" : "xlsx";
+        }
+    }
+
+    /**
+     * Told each time one classroom of a range export is written. Called from
+     * export pool threads, so implementations must be thread-safe.
+     */
+    @FunctionalInterface
+    public interface ExportProgress {
+        ExportProgress NONE = rows -> {
+        };
+
+        void classroomExported(int rows);
+    }
+
+    private final AttendanceArchiveService attendanceArchiveService;
+    private final ClassroomRepository classroomRepository;
     private final ExcelGenerator excelGenerator;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${export.parallelism:4}")
+    private int parallelism;
+
+    @Value("${export.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${export.max-days:366}")
+    private int maxDays;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // A full queue makes the requesting thread build the file itself, which slows
+        // down new exports instead of queueing without limit
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "excel-export-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
 
     /**
-     * Export attendance to Excel file
+     * Stream attendance to an Excel file. Rows are read through a database
+     * cursor and written out as they arrive, so memory use does not grow
+     * with the size of the export.
      * 
      * @param classroomId Classroom ID
      * @param date Attendance date
-     * @return ByteArrayInputStream containing Excel file
+     * @param out Stream to write the workbook to, typically the HTTP response
      * @throws IOException if export fails
      */
     @Transactional(readOnly = true)
-    public ByteArrayInputStream exportAttendanceToExcel(Long classroomId, LocalDate date) 
+    public void exportAttendanceToExcel(Long classroomId, LocalDate date, OutputStream out)
             throws IOException {
-        
-        // Get attendance records
-        List<Attendance> attendanceList = attendanceService
-                .getAttendanceByDateAndClassroom(date, classroomId);
 
-        if (attendanceList.isEmpty()) {
+        int exported;
+        try (Stream<AttendanceRowDTO> rows = attendanceArchiveService.streamRowsByDateAndClassroom(date, classroomId)) {
+            exported = excelGenerator.writeAttendanceExcel(rows, out);
+        }
+
+        if (exported == 0) {
             log.warn("No attendance records found for classroom {} on {}", classroomId, date);
         }
+        log.info("Exported {} attendance records to Excel for date {}", exported, date);
+    }
+
+    /**
+     * Resolve and validate the classrooms and dates of a range export
+     * 
+     * @param classroomIds Classroom IDs, or null/empty for all classrooms
+     * @param from First date
+     * @param to Last date
+     * @return Classrooms to export, ordered by course code
+     * @throws IllegalArgumentException if the range or a classroom is invalid
+     */
+    @Transactional(readOnly = true)
+    public List<Classroom> resolveRange(Collection<Long> classroomIds, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Date range must not exceed " + maxDays + " days");
+        }
+
+        List<Classroom> classrooms;
+        if (classroomIds == null || classroomIds.isEmpty()) {
+            classrooms = classroomRepository.findAll();
+        } else {
+            Set<Long> wanted = new HashSet<>(classroomIds);
+            classrooms = classroomRepository.findAllById(wanted);
+            if (classrooms.size() != wanted.size()) {
+                throw new IllegalArgumentException("Unknown classroom id in " + wanted);
+            }
+        }
+        return classrooms.stream()
+                .sorted(Comparator.comparing(Classroom::getCourseCode))
+                .toList();
+    }
+
+    /**
+     * Export a date range as a ZIP with one workbook per classroom. The
+     * workbooks are built in parallel into temporary files and copied into
+     * the ZIP in classroom order as each one finishes.
+     * 
+     * @param classrooms Classrooms from {@link #resolveRange}
+     * @param from First date
+     * @param to Last date
+     * @param out Stream to write the ZIP to
+     * @throws IOException if export fails
+     */
+    public void exportRangeAsZip(List<Classroom> classrooms, LocalDate from, LocalDate to, OutputStream out)
+            throws IOException {
+        exportRangeAsZip(classrooms, from, to, out, ExportProgress.NONE);
+    }
+
+    /**
+     * Same as {@link #exportRangeAsZip(List, LocalDate, LocalDate, OutputStream)},
+     * reporting each finished classroom
+     */
+    public void exportRangeAsZip(List<Classroom> classrooms, LocalDate from, LocalDate to, OutputStream out,
+            ExportProgress progress) throws IOException {
+        AtomicBoolean aborted = new AtomicBoolean();
+        List<Future<Path>> files = new ArrayList<>();
+        for (Classroom classroom : classrooms) {
+            files.add(executor.submit(() -> writeClassroomFile(classroom, from, to, aborted, progress)));
+        }
 
-        // Generate Excel file
-        ByteArrayInputStream excelFile = excelGenerator.generateAttendanceExcel(attendanceList, date);
-        
-        log.info("Exported {} attendance records to Excel for date {}", 
-                attendanceList.size(), date);
-        
-        return excelFile;
+        int copied = 0;
+        try {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (int i = 0; i < classrooms.size(); i++) {
+                Path file = awaitFile(files.get(i));
+                try {
+                    zip.putNextEntry(new ZipEntry(
+                            excelGenerator.generateFilename(classrooms.get(i).getCourseCode(), from, to, "xlsx")));
+                    Files.copy(file, zip);
+                    zip.closeEntry();
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+                copied++;
+            }
+            zip.finish();
+        } finally {
+            if (copied < files.size()) {
+                aborted.set(true);
+                files.forEach(f -> f.cancel(true));
+                // Files already built are not picked up by their tasks any more
+                for (Future<Path> file : files.subList(copied, files.size())) {
+                    if (file.isDone() && !file.isCancelled()) {
+                        try {
+                            Files.deleteIfExists(file.get());
+                        } catch (Exception ignored) {
+                            // Failed task, nothing on disk
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Exported attendance of {} classroom(s) from {} to {} as ZIP", classrooms.size(), from, to);
+    }
+
+    /**
+     * Export a date range as one workbook with a sheet per classroom. Sheets
+     * of one workbook cannot be written concurrently, so this runs
+     * sequentially on the calling thread.
+     * 
+     * @param classrooms Classrooms from {@link #resolveRange}
+     * @param from First date
+     * @param to Last date
+     * @param out Stream to write the workbook to
+     * @throws IOException if export fails
+     */
+    @Transactional(readOnly = true)
+    public void exportRangeAsWorkbook(List<Classroom> classrooms, LocalDate from, LocalDate to, OutputStream out)
+            throws IOException {
+        exportRangeAsWorkbook(classrooms, from, to, out, ExportProgress.NONE);
+    }
+
+    /**
+     * Same as {@link #exportRangeAsWorkbook(List, LocalDate, LocalDate, OutputStream)},
+     * reporting each finished classroom
+     */
+    @Transactional(readOnly = true)
+    public void exportRangeAsWorkbook(List<Classroom> classrooms, LocalDate from, LocalDate to, OutputStream out,
+            ExportProgress progress) throws IOException {
+        try (SXSSFWorkbook workbook = excelGenerator.createStreamingWorkbook()) {
+            int total = 0;
+            for (Classroom classroom : classrooms) {
+                try (Stream<AttendanceRowDTO> rows = attendanceArchiveService
+                        .streamRowsByClassroomAndDateRange(classroom.getId(), from, to)) {
+                    int written = excelGenerator.writeAttendanceSheet(workbook, classroom.getCourseCode(), rows, true);
+                    progress.classroomExported(written);
+                    total += written;
+                }
+            }
+            workbook.write(out);
+            log.info("Exported {} attendance records of {} classroom(s) from {} to {}",
+                    total, classrooms.size(), from, to);
+        }
+    }
+
+    private Path writeClassroomFile(Classroom classroom, LocalDate from, LocalDate to, AtomicBoolean aborted,
+            ExportProgress progress) throws IOException {
+        Path file = Files.createTempFile("attendance-export-", ".xlsx");
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (SXSSFWorkbook workbook = excelGenerator.createStreamingWorkbook();
+                        Stream<AttendanceRowDTO> rows = attendanceArchiveService
+                                .streamRowsByClassroomAndDateRange(classroom.getId(), from, to);
+                        OutputStream out = Files.newOutputStream(file)) {
+                    int written = excelGenerator.writeAttendanceSheet(workbook, classroom.getCourseCode(), rows, true);
+                    workbook.write(out);
+                    progress.classroomExported(written);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        if (aborted.get()) {
+            Files.deleteIfExists(file);
+        }
+        return file;
+    }
+
+    private static Path awaitFile(Future<Path> file) throws IOException {
+        try {
+            return file.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while building export");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("Failed to build export", e.getCause());
+        }
     }
 
     /**
@@ -61,4 +341,16 @@ public class ExcelExportService {
     public String getFilename(LocalDate date) {
         return excelGenerator.generateFilename(date);
     }
+
+    /**
+     * Generate filename for a range export
+     * 
+     * @param from First date
+     * @param to Last date
+     * @param format Export format
+     * @return Filename
+     */
+    public String getFilename(LocalDate from, LocalDate to, RangeFormat format) {
+        return excelGenerator.generateFilename(null, from, to, format.getExtension());
+    }
 }
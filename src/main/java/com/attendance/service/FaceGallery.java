@@ -0,0 +1,102 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.FaceTemplate;
+import com.attendance.model.Student;
+import com.attendance.repository.FaceTemplateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Face templates of the current encoder model, held in memory for matching.
+ * Loaded with one streaming read on first use and kept until
+ * {@link #invalidateAfterCommit} is called, which every change to a student
+ * or template does.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FaceGallery {
+
+    private final FaceTemplateRepository faceTemplateRepository;
+    private final FaceRecognitionService faceRecognitionService;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Templates and their students, index for index. A student with several
+     * templates appears once per template.
+     */
+    public record Snapshot(List<Student> students, List<byte[]> encodings) {
+        public boolean isEmpty() {
+            return encodings.isEmpty();
+        }
+    }
+
+    private volatile Snapshot snapshot;
+
+    // Keeps a load that raced with an invalidation out of the cache
+    private final GenerationGuard guard = new GenerationGuard();
+
+    /**
+     * @return Current gallery, loaded from the database if needed
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        return guard.load(this::load, loaded -> snapshot = loaded);
+    }
+
+    /**
+     * Drop the gallery once the current transaction commits, or right away
+     * outside of one
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    public void invalidate() {
+        guard.invalidate(() -> snapshot = null);
+        log.debug("Face gallery invalidated");
+    }
+
+    private Snapshot load() {
+        String modelVersion = faceRecognitionService.getModelVersion();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Snapshot loaded = ReplicaRouting.onPrimary(() -> readOnly.execute(status -> {
+            List<Student> students = new ArrayList<>();
+            List<byte[]> encodings = new ArrayList<>();
+            try (Stream<FaceTemplate> templates = faceTemplateRepository.streamWithStudentByModelVersion(modelVersion)) {
+                templates.forEach(template -> {
+                    students.add(template.getStudent());
+                    encodings.add(template.getEncoding());
+                });
+            }
+            return new Snapshot(List.copyOf(students), List.copyOf(encodings));
+        }));
+        log.info("Loaded face gallery: {} template(s) for model {}", loaded.encodings().size(), modelVersion);
+        return loaded;
+    }
+}
@@ -1,11 +1,14 @@
 package com.attendance.service;
 
+import com.attendance.pipeline.Priority;
 import com.attendance.util.FaceDetector;
+import jakarta.annotation.PostConstruct;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -17,6 +20,7 @@ import org.springframework.web.client.RestTemplate;
 
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 /**
  * Service for face recognition operations
@@ -32,12 +36,41 @@ public class FaceRecognitionService {
     private static final double RECOGNITION_THRESHOLD = 0.5; // Stricter threshold for Python encodings
     private static final String PYTHON_SERVICE_URL = "http://localhost:5000";
 
+    @Value("${encoder.model-version:dlib-resnet-128-v1}")
+    private String modelVersion;
+
+    @Value("${encoder.max-concurrent-requests:4}")
+    private int maxConcurrentRequests;
+
+    @Value("${encoder.reserved-interactive-requests:1}")
+    private int reservedInteractiveRequests;
+
+    // Background calls must hold a background permit as well, so the reserved
+    // share of the total is always left for interactive callers
+    private Semaphore encoderPermits;
+    private Semaphore backgroundPermits;
+
     @Data
     private static class EncodingResponse {
         private List<Float> encoding;
         private boolean found;
     }
 
+    @PostConstruct
+    void initEncoderPermits() {
+        int total = Math.max(1, maxConcurrentRequests);
+        int reserved = Math.max(0, Math.min(reservedInteractiveRequests, total - 1));
+        encoderPermits = new Semaphore(total, true);
+        backgroundPermits = new Semaphore(total - reserved, true);
+    }
+
+    /**
+     * @return Version of the encoder model, stored with every face template
+     */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
     /**
      * Detect faces in an image
      * 
@@ -54,16 +87,59 @@ public class FaceRecognitionService {
     }
 
     /**
-     * Extract face encoding/features from a face image
+     * Extract face encoding/features from a face image on behalf of an
+     * interactive request
      * 
      * @param faceImage OpenCV Mat containing face region
      * @return Byte array representing face encoding
      */
     public byte[] extractFaceEncoding(Mat faceImage) {
+        return extractFaceEncoding(faceImage, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Extract face encoding/features from a face image. Calls to the encoder
+     * service are limited in number; background work cannot use the share
+     * reserved for interactive requests.
+     * 
+     * @param faceImage OpenCV Mat containing face region
+     * @param priority  Priority class of the caller
+     * @return Byte array representing face encoding
+     */
+    public byte[] extractFaceEncoding(Mat faceImage, Priority priority) {
         if (faceImage == null || faceImage.empty()) {
             return new byte[0];
         }
 
+        boolean background = priority == Priority.BACKGROUND;
+        try {
+            if (background) {
+                backgroundPermits.acquire();
+            }
+            try {
+                encoderPermits.acquire();
+            } catch (InterruptedException e) {
+                if (background) {
+                    backgroundPermits.release();
+                }
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new byte[0];
+        }
+
+        try {
+            return requestEncoding(faceImage);
+        } finally {
+            encoderPermits.release();
+            if (background) {
+                backgroundPermits.release();
+            }
+        }
+    }
+
+    private byte[] requestEncoding(Mat faceImage) {
         try {
             // Convert to JPG bytes
             byte[] imageBytes = faceDetector.matToByteArray(faceImage);
@@ -0,0 +1,51 @@
+package com.attendance.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Moves encodings left in the old students.face_encoding column into
+ * face_templates, once, at startup. The column is cleared but not dropped;
+ * databases created after the split never have it and are skipped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaceTemplateMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FaceRecognitionService faceRecognitionService;
+    private final FaceGallery faceGallery;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void migrateLegacyEncodings() {
+        Integer pending;
+        try {
+            pending = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM students WHERE face_encoding IS NOT NULL", Integer.class);
+        } catch (DataAccessException e) {
+            log.debug("No legacy face_encoding column, nothing to migrate");
+            return;
+        }
+        if (pending == null || pending == 0) {
+            return;
+        }
+
+        int copied = jdbcTemplate.update("INSERT INTO face_templates (student_id, model_version, encoding, created_at) "
+                + "SELECT s.id, ?, s.face_encoding, CURRENT_TIMESTAMP FROM students s "
+                + "WHERE s.face_encoding IS NOT NULL "
+                + "AND NOT EXISTS (SELECT 1 FROM face_templates t WHERE t.student_id = s.id)",
+                faceRecognitionService.getModelVersion());
+        jdbcTemplate.update("UPDATE students SET face_encoding = NULL WHERE face_encoding IS NOT NULL");
+
+        faceGallery.invalidateAfterCommit();
+        log.info("Moved {} legacy face encoding(s) to face_templates", copied);
+    }
+}
@@ -0,0 +1,46 @@
+package com.attendance.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a read-through cache from storing a load that raced with an
+ * invalidation. A load notes the generation before it reads and stores its
+ * result only if no invalidation ran in between; an invalidation bumps the
+ * generation and clears the cache under the same lock as the store.
+ */
+final class GenerationGuard {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Load a value, and store it unless the cache was invalidated meanwhile
+     *
+     * @param loader Reads the value; runs without the lock
+     * @param store  Puts the value in the cache; runs under the lock
+     * @return The loaded value, stored or not
+     */
+    <T> T load(Supplier<T> loader, Consumer<T> store) {
+        long seen = generation.get();
+        T loaded = loader.get();
+        synchronized (this) {
+            if (generation.get() == seen) {
+                store.accept(loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop cached values; loads that started before are not stored
+     *
+     * @param clear Removes the values from the cache; runs under the lock
+     */
+    void invalidate(Runnable clear) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            clear.run();
+        }
+    }
+}
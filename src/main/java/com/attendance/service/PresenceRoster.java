@@ -0,0 +1,235 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.dto.AttendanceUpdateDTO;
+import com.attendance.dto.ClassroomUpdateDTO;
+import com.attendance.model.Attendance;
+import com.attendance.model.Student;
+import com.attendance.pipeline.Recognition;
+import com.attendance.repository.AttendanceRepository;
+import com.attendance.repository.StudentRepository;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Today's "who is here" roster per classroom, held in memory. Sightings come
+ * straight from the recognition pipeline and statuses from committed
+ * attendance changes, so live views never query the database. A classroom
+ * is loaded from the database once per day, the first time someone asks for
+ * its snapshot.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceRoster {
+
+    private final AttendanceRepository attendanceRepository;
+    private final StudentRepository studentRepository;
+
+    private static final class Roster {
+        private final Map<Long, AttendanceUpdateDTO> entries = new LinkedHashMap<>();
+        private boolean loaded;
+    }
+
+    private LocalDate date = LocalDate.now();
+    private final Map<Long, Roster> rosters = new HashMap<>();
+    private Map<Long, Set<Long>> changed = new HashMap<>();
+    private Set<Long> resets = new LinkedHashSet<>();
+    private long version;
+
+    /**
+     * Record the students recognized in one frame
+     *
+     * @param classroomId  Classroom ID
+     * @param recognitions Students recognized in the frame
+     */
+    public synchronized void recordSightings(Long classroomId, List<Recognition> recognitions) {
+        rollOver();
+        Roster roster = rosters.computeIfAbsent(classroomId, id -> new Roster());
+        LocalTime now = LocalTime.now();
+        for (Recognition recognition : recognitions) {
+            Student student = recognition.student();
+            AttendanceUpdateDTO entry = roster.entries.computeIfAbsent(student.getId(), id -> newEntry(id, now));
+            describe(entry, student);
+            entry.setLastSeen(now);
+            entry.setConfidence(recognition.confidence());
+            touch(classroomId, entry);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onAttendanceChanged(AttendanceChangedEvent event) {
+        rollOver();
+        if (!event.date().equals(date)) {
+            return;
+        }
+
+        if (event.replaced()) {
+            // Reloaded on the next snapshot request; clients are told to ask for one
+            resets.addAll(rosters.keySet());
+            rosters.clear();
+            changed.clear();
+            return;
+        }
+
+        for (StatusTransition transition : event.transitions()) {
+            Roster roster = rosters.computeIfAbsent(transition.classroomId(), id -> new Roster());
+            AttendanceUpdateDTO entry = roster.entries.computeIfAbsent(transition.studentId(),
+                    id -> newEntry(id, null));
+            entry.setStatus(transition.current().name());
+            entry.setDetectionCount(transition.detections());
+            touch(transition.classroomId(), entry);
+        }
+    }
+
+    /**
+     * Full roster of a classroom for today, loading it from the database on
+     * first use
+     *
+     * @param classroomId Classroom ID
+     * @return Roster snapshot
+     */
+    public ClassroomUpdateDTO getSnapshot(Long classroomId) {
+        LocalDate today;
+        synchronized (this) {
+            rollOver();
+            Roster roster = rosters.get(classroomId);
+            if (roster != null && roster.loaded) {
+                return new ClassroomUpdateDTO(classroomId, date, false, copyOf(roster.entries.values()));
+            }
+            today = date;
+        }
+
+        // Query outside the lock so the pipeline is never held up by it
+        List<Attendance> records = ReplicaRouting.onPrimary(
+                () -> attendanceRepository.findWithStudentByClassroomAndDate(classroomId, today));
+
+        synchronized (this) {
+            rollOver();
+            Roster roster = rosters.computeIfAbsent(classroomId, id -> new Roster());
+            if (today.equals(date) && !roster.loaded) {
+                for (Attendance record : records) {
+                    // Live entries are newer than what was read, so they are kept
+                    roster.entries.computeIfAbsent(record.getStudent().getId(), id -> fromRecord(record));
+                }
+                roster.loaded = true;
+                log.debug("Loaded presence roster of classroom {} with {} record(s)", classroomId, records.size());
+            }
+            return new ClassroomUpdateDTO(classroomId, date, false, copyOf(roster.entries.values()));
+        }
+    }
+
+    /**
+     * Take every change since the last call, one update per classroom
+     *
+     * @return Changed entries and resets, per classroom
+     */
+    public List<ClassroomUpdateDTO> drainChanges() {
+        List<ClassroomUpdateDTO> updates = new ArrayList<>();
+        List<AttendanceUpdateDTO> unnamed = new ArrayList<>();
+        synchronized (this) {
+            for (Long classroomId : resets) {
+                updates.add(new ClassroomUpdateDTO(classroomId, date, true, List.of()));
+            }
+            changed.forEach((classroomId, studentIds) -> {
+                Roster roster = rosters.get(classroomId);
+                if (roster == null) {
+                    return;
+                }
+                List<AttendanceUpdateDTO> entries = copyOf(studentIds.stream()
+                        .map(roster.entries::get)
+                        .toList());
+                entries.stream().filter(e -> e.getStudentCode() == null).forEach(unnamed::add);
+                updates.add(new ClassroomUpdateDTO(classroomId, date, false, entries));
+            });
+            resets = new LinkedHashSet<>();
+            changed = new HashMap<>();
+        }
+
+        if (!unnamed.isEmpty()) {
+            nameStudents(unnamed);
+        }
+        return updates;
+    }
+
+    /**
+     * Fill in students that were only ever seen through committed changes,
+     * e.g. written by another node, in one query
+     */
+    private void nameStudents(List<AttendanceUpdateDTO> unnamed) {
+        Map<Long, Student> students = new HashMap<>();
+        studentRepository.findAllById(unnamed.stream().map(AttendanceUpdateDTO::getStudentId).toList())
+                .forEach(s -> students.put(s.getId(), s));
+
+        synchronized (this) {
+            for (AttendanceUpdateDTO update : unnamed) {
+                Student student = students.get(update.getStudentId());
+                if (student != null) {
+                    describe(update, student);
+                    rosters.values().stream()
+                            .map(r -> r.entries.get(update.getStudentId()))
+                            .filter(e -> e != null && e.getStudentCode() == null)
+                            .forEach(e -> describe(e, student));
+                }
+            }
+        }
+    }
+
+    private void rollOver() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(date)) {
+            date = today;
+            rosters.clear();
+            changed.clear();
+            resets.clear();
+        }
+    }
+
+    private void touch(Long classroomId, AttendanceUpdateDTO entry) {
+        entry.setVersion(++version);
+        changed.computeIfAbsent(classroomId, id -> new LinkedHashSet<>()).add(entry.getStudentId());
+    }
+
+    private static AttendanceUpdateDTO newEntry(Long studentId, LocalTime checkInTime) {
+        AttendanceUpdateDTO entry = new AttendanceUpdateDTO();
+        entry.setStudentId(studentId);
+        entry.setCheckInTime(checkInTime);
+        return entry;
+    }
+
+    private static void describe(AttendanceUpdateDTO entry, Student student) {
+        entry.setStudentCode(student.getStudentId());
+        entry.setFullName(student.getFullName());
+        entry.setDepartment(student.getDepartment());
+    }
+
+    private AttendanceUpdateDTO fromRecord(Attendance record) {
+        AttendanceUpdateDTO entry = newEntry(record.getStudent().getId(), record.getCheckInTime());
+        describe(entry, record.getStudent());
+        entry.setStatus(record.getStatus().name());
+        entry.setDetectionCount(record.getDetectionCount() != null ? record.getDetectionCount() : 0);
+        entry.setConfidence(record.getConfidenceScore());
+        entry.setVersion(++version);
+        return entry;
+    }
+
+    private static List<AttendanceUpdateDTO> copyOf(Iterable<AttendanceUpdateDTO> entries) {
+        List<AttendanceUpdateDTO> copies = new ArrayList<>();
+        entries.forEach(e -> copies.add(e.copy()));
+        return copies;
+    }
+}
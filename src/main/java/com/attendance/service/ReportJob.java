@@ -0,0 +1,105 @@
+package com.attendance.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An export running in the background. Progress is counted in classrooms;
+ * once {@link Status#DONE} the report can be downloaded from its file.
+ */
+@Getter
+public class ReportJob {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final List<Long> classroomIds;
+    private final ExcelExportService.RangeFormat format;
+    private final String filename;
+    private final Instant createdAt = Instant.now();
+
+    @JsonIgnore
+    private final String cacheKey;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cached;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    @JsonIgnore
+    private volatile Path file;
+
+    private final AtomicInteger classroomsDone = new AtomicInteger();
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    ReportJob(String id, String cacheKey, LocalDate from, LocalDate to, List<Long> classroomIds,
+            ExcelExportService.RangeFormat format, String filename) {
+        this.id = id;
+        this.cacheKey = cacheKey;
+        this.from = from;
+        this.to = to;
+        this.classroomIds = List.copyOf(classroomIds);
+        this.format = format;
+        this.filename = filename;
+    }
+
+    public int getClassroomsTotal() {
+        return classroomIds.size();
+    }
+
+    public int getClassroomsDone() {
+        return classroomsDone.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return Share of classrooms written, from 0 to 100
+     */
+    public int getProgress() {
+        if (status == Status.DONE) {
+            return 100;
+        }
+        int total = getClassroomsTotal();
+        return total == 0 ? 0 : Math.min(99, classroomsDone.get() * 100 / total);
+    }
+
+    void classroomExported(int rows) {
+        classroomsDone.incrementAndGet();
+        rowsWritten.addAndGet(rows);
+    }
+
+    void started() {
+        status = Status.RUNNING;
+    }
+
+    void completed(Path file, boolean cached) {
+        this.file = file;
+        this.cached = cached;
+        this.finishedAt = Instant.now();
+        this.status = Status.DONE;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+}
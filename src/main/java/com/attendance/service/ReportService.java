@@ -0,0 +1,330 @@
+package com.attendance.service;
+
+import com.attendance.model.Classroom;
+import com.attendance.repository.ArchivedAttendanceRepository;
+import com.attendance.repository.AttendanceRepository;
+import com.attendance.repository.ClassroomRepository;
+import com.attendance.repository.StudentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background report jobs backed by a disk cache. Every report is stored
+ * under its classrooms, dates and format plus a fingerprint of the
+ * underlying data: live and archived attendance of those classrooms and
+ * dates, and the latest student and classroom edit. A report is only
+ * generated again after the data it covers has changed. Older versions of
+ * a report are deleted when a newer one is stored.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReportService {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final ExcelExportService excelExportService;
+    private final AttendanceRepository attendanceRepository;
+    private final ArchivedAttendanceRepository archivedAttendanceRepository;
+    private final StudentRepository studentRepository;
+    private final ClassroomRepository classroomRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${reports.cache-dir:data/reports}")
+    private String cacheDir;
+
+    @Value("${reports.job-threads:2}")
+    private int jobThreads;
+
+    @Value("${reports.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${reports.job-ttl-minutes:60}")
+    private long jobTtlMinutes;
+
+    @Value("${reports.cache-retention-days:30}")
+    private long cacheRetentionDays;
+
+    @FunctionalInterface
+    private interface ReportWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private Path cacheRoot;
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate readOnlyTransaction;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // Jobs not yet finished, by cache key, so the same report is never built twice at once
+    private final Map<String, ReportJob> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        cacheRoot = Paths.get(cacheDir);
+        Files.createDirectories(cacheRoot);
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(cacheRoot, "*" + PART_SUFFIX)) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "report-job-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit a range export. If the report is already cached for the current
+     * data the job is done at once; if the same report is being built the
+     * running job is returned.
+     *
+     * @param classroomIds Classroom IDs, or null/empty for all classrooms
+     * @param from         First date
+     * @param to           Last date
+     * @param format       Export format
+     * @return Job to poll for progress
+     * @throws IllegalArgumentException   if the range or a classroom is invalid
+     * @throws RejectedExecutionException if too many jobs are queued
+     */
+    public ReportJob submit(Collection<Long> classroomIds, LocalDate from, LocalDate to,
+            ExcelExportService.RangeFormat format) {
+        List<Classroom> classrooms = excelExportService.resolveRange(classroomIds, from, to);
+        if (classrooms.isEmpty()) {
+            throw new IllegalArgumentException("No classrooms to export");
+        }
+        List<Long> ids = classrooms.stream().map(Classroom::getId).sorted().toList();
+        String cacheKey = cacheKey(format.name(), ids, from, to);
+        Path cached = cacheRoot.resolve(cacheKey + "." + format.getExtension());
+
+        synchronized (this) {
+            ReportJob running = inFlight.get(cacheKey);
+            if (running != null) {
+                return running;
+            }
+
+            ReportJob job = new ReportJob(UUID.randomUUID().toString(), cacheKey, from, to, ids, format,
+                    excelExportService.getFilename(from, to, format));
+            if (Files.exists(cached)) {
+                job.completed(cached, true);
+                jobs.put(job.getId(), job);
+                return job;
+            }
+
+            inFlight.put(cacheKey, job);
+            try {
+                executor.execute(() -> run(job, classrooms));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(cacheKey);
+                throw e;
+            }
+            jobs.put(job.getId(), job);
+            log.info("Queued report job {} for {} classroom(s) from {} to {}", job.getId(), ids.size(), from, to);
+            return job;
+        }
+    }
+
+    /**
+     * @param jobId Job ID
+     * @return Job, unless unknown or expired
+     */
+    public Optional<ReportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Report of one classroom and day, from the cache or generated into it
+     * on the calling thread
+     *
+     * @param classroomId Classroom ID
+     * @param date        Attendance date
+     * @return Cached report file
+     * @throws IOException if generation fails
+     */
+    public Path getDailyReport(Long classroomId, LocalDate date) throws IOException {
+        String cacheKey = cacheKey("DAILY", List.of(classroomId), date, date);
+        Path cached = cacheRoot.resolve(cacheKey + ".xlsx");
+        if (Files.exists(cached)) {
+            return cached;
+        }
+        return store("DAILY", List.of(classroomId), date, date, "xlsx",
+                out -> excelExportService.exportAttendanceToExcel(classroomId, date, out));
+    }
+
+    /**
+     * Generate the daily report of every classroom for a date, skipping
+     * those already cached
+     *
+     * @param date Attendance date
+     * @return Number of classrooms whose report is now cached
+     */
+    public int pregenerateDailyReports(LocalDate date) {
+        int ready = 0;
+        for (Classroom classroom : excelExportService.resolveRange(null, date, date)) {
+            try {
+                getDailyReport(classroom.getId(), date);
+                ready++;
+            } catch (Exception e) {
+                log.error("Failed to pre-generate report of {} for {}", classroom.getCourseCode(), date, e);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Drop finished jobs nobody has asked about for a while
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void expireJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobTtlMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    /**
+     * Delete cached reports not written for longer than the retention
+     *
+     * @return Number of files deleted
+     */
+    public int evictExpiredReports() throws IOException {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(cacheRetentionDays));
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheRoot)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private void run(ReportJob job, List<Classroom> classrooms) {
+        job.started();
+        try {
+            Path file = store(job.getFormat().name(), job.getClassroomIds(), job.getFrom(), job.getTo(),
+                    job.getFormat().getExtension(), out -> {
+                        if (job.getFormat() == ExcelExportService.RangeFormat.ZIP) {
+                            excelExportService.exportRangeAsZip(classrooms, job.getFrom(), job.getTo(), out,
+                                    job::classroomExported);
+                        } else {
+                            excelExportService.exportRangeAsWorkbook(classrooms, job.getFrom(), job.getTo(), out,
+                                    job::classroomExported);
+                        }
+                    });
+            job.completed(file, false);
+            log.info("Report job {} finished: {} row(s)", job.getId(), job.getRowsWritten());
+        } catch (Exception e) {
+            log.error("Report job {} failed", job.getId(), e);
+            job.failed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            inFlight.remove(job.getCacheKey());
+        }
+    }
+
+    /**
+     * Write a report to a temporary file and move it into place, so readers
+     * never see a partial file. The key is fingerprinted in the transaction
+     * the writer runs in, before it reads anything (ZIP workers read in
+     * transactions of their own, opened later), so a file is never stored
+     * under a key newer than its contents. Older versions of the same report
+     * are deleted afterwards.
+     */
+    private Path store(String kind, List<Long> classroomIds, LocalDate from, LocalDate to, String extension,
+            ReportWriter writer) throws IOException {
+        Path part = Files.createTempFile(cacheRoot, "report-", PART_SUFFIX);
+        Path target;
+        try {
+            String cacheKey = readOnlyTransaction.execute(status -> {
+                String key = cacheKey(kind, classroomIds, from, to);
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part))) {
+                    writer.write(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return key;
+            });
+            target = cacheRoot.resolve(cacheKey + "." + extension);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Files.deleteIfExists(part);
+        }
+
+        String stored = target.getFileName().toString();
+        String reportId = stored.substring(0, stored.indexOf('-') + 1);
+        try (DirectoryStream<Path> versions = Files.newDirectoryStream(cacheRoot, reportId + "*")) {
+            for (Path old : versions) {
+                if (!old.equals(target)) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Key of a report at the current state of its data: a hash of what the
+     * report covers, then a hash of the data fingerprint
+     */
+    private String cacheKey(String kind, List<Long> classroomIds, LocalDate from, LocalDate to) {
+        String fingerprint = Arrays.toString(attendanceRepository.fingerprint(classroomIds, from, to).get(0))
+                + Arrays.toString(archivedAttendanceRepository.fingerprint(classroomIds, from, to).get(0))
+                + "|" + studentRepository.findLastUpdate() + "|" + classroomRepository.findLastUpdate();
+        return sha256(kind + "|" + classroomIds + "|" + from + "|" + to) + "-" + sha256(fingerprint);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.attendance.service;
+
+import com.attendance.repository.StudentPurgeRepository;
+import com.attendance.repository.StudentPurgeRepository.DependentTable;
+import com.attendance.repository.StudentPurgeRepository.RecordTable;
+import com.attendance.repository.StudentPurgeRepository.RemovedRecord;
+import com.attendance.repository.StudentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes students with everything that references them through bounded
+ * set-based statements, one batch per transaction, instead of loading and
+ * cascading entities. Attendance records leave the daily summary in the
+ * same transaction and every affected day is announced as replaced, so the
+ * derived caches recompute it. Face image files are deleted and the face
+ * gallery is warmed again in the background.
+ * <p>
+ * Buffered detections are flushed to the event log first, and each chunk of
+ * students is purged while the attendance rollup is paused, so no rollup
+ * can put records back between the attendance and detection deletes.
+ * Uploads do not wait for the rollup; they lock their students, and so
+ * does the transaction deleting the students, which sweeps up records an
+ * upload committed meanwhile. Detections of a removed student that arrive
+ * later are skipped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StudentRemovalService {
+
+    /** Students per IN list, to keep statements a sane size */
+    private static final int STUDENT_CHUNK = 500;
+
+    /**
+     * What a removal deleted
+     */
+    public record RemovalResult(int students, long attendanceRecords, long archivedRecords, long detectionEvents,
+            long faceTemplates) {
+    }
+
+    private final StudentRepository studentRepository;
+    private final StudentPurgeRepository studentPurgeRepository;
+    private final DailySummaryService dailySummaryService;
+    private final FaceGallery faceGallery;
+    private final DetectionEventBuffer detectionEventBuffer;
+    private final DetectionEventService detectionEventService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${students.delete.batch-size:1000}")
+    private int batchSize;
+
+    private ExecutorService cleanupExecutor;
+
+    @PostConstruct
+    void init() {
+        cleanupExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "student-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cleanupExecutor.shutdown();
+    }
+
+    /**
+     * Delete every student registered before a date, optionally only of one
+     * department
+     *
+     * @param registeredBefore Registration date, exclusive
+     * @param department       Department, or null for all
+     * @return What was deleted
+     * @throws IllegalArgumentException if the date is missing or in the future
+     */
+    public RemovalResult removeCohort(LocalDate registeredBefore, String department) {
+        if (registeredBefore == null) {
+            throw new IllegalArgumentException("registeredBefore is required");
+        }
+        if (registeredBefore.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("registeredBefore cannot be in the future");
+        }
+        String filter = department == null || department.isBlank() ? null : department.trim();
+        List<Long> ids = studentRepository.findIdsRegisteredBefore(registeredBefore.atStartOfDay(), filter);
+        RemovalResult result = removeStudents(ids);
+        log.info("Deleted cohort registered before {}{}: {}", registeredBefore,
+                filter != null ? " in " + filter : "", result);
+        return result;
+    }
+
+    /**
+     * Delete students and all of their records, templates and detections.
+     * Unknown IDs are ignored.
+     *
+     * @param studentIds Student database IDs
+     * @return What was deleted
+     */
+    public RemovalResult removeStudents(Collection<Long> studentIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(studentIds));
+        int students = 0;
+        long records = 0;
+        long archived = 0;
+        long detections = 0;
+        long templates = 0;
+        List<String> imagePaths = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return new RemovalResult(0, 0, 0, 0, 0);
+        }
+
+        // Buffered detections of these students land in the event log, where the purge finds them
+        detectionEventBuffer.flush();
+        for (int i = 0; i < ids.size(); i += STUDENT_CHUNK) {
+            List<Long> chunk = ids.subList(i, Math.min(i + STUDENT_CHUNK, ids.size()));
+            RemovalResult removed = detectionEventService.whileRollupPaused(() -> removeChunk(chunk, imagePaths));
+            students += removed.students();
+            records += removed.attendanceRecords();
+            archived += removed.archivedRecords();
+            detections += removed.detectionEvents();
+            templates += removed.faceTemplates();
+        }
+
+        if (students > 0) {
+            faceGallery.invalidate();
+            cleanupExecutor.execute(() -> cleanUp(imagePaths));
+        }
+        return new RemovalResult(students, records, archived, detections, templates);
+    }
+
+    private RemovalResult removeChunk(List<Long> chunk, List<String> imagePaths) {
+        imagePaths.addAll(studentPurgeRepository.findFaceImagePaths(chunk));
+        long records = removeRecords(RecordTable.ATTENDANCE, chunk);
+        long archived = removeRecords(RecordTable.ARCHIVE, chunk);
+        long detections = removeDependents(DependentTable.DETECTION_EVENTS, chunk);
+        long templates = removeDependents(DependentTable.FACE_TEMPLATES, chunk);
+        long[] swept = { 0 };
+        int students = transactionTemplate.execute(status -> {
+            // Uploads hold these locks until they commit; what they wrote is swept up here
+            studentRepository.lockExistingIds(chunk);
+            int batch;
+            do {
+                batch = removeRecordBatch(RecordTable.ATTENDANCE, chunk);
+                swept[0] += batch;
+            } while (batch == batchSize);
+            return studentPurgeRepository.deleteStudents(chunk);
+        });
+        return new RemovalResult(students, records + swept[0], archived, detections, templates);
+    }
+
+    private long removeRecords(RecordTable table, List<Long> studentIds) {
+        long removed = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> removeRecordBatch(table, studentIds));
+            removed += batch;
+        } while (batch == batchSize);
+        return removed;
+    }
+
+    private int removeRecordBatch(RecordTable table, List<Long> studentIds) {
+        List<RemovedRecord> records = studentPurgeRepository.findRecordBatch(table, studentIds, batchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        int deleted = studentPurgeRepository.deleteRecords(table, records);
+        dailySummaryService.forget(records);
+        // Published in the transaction, so the caches hear of it once it commits
+        new TreeSet<>(records.stream().map(RemovedRecord::date).toList())
+                .forEach(date -> eventPublisher.publishEvent(AttendanceChangedEvent.replaced(date)));
+        return deleted;
+    }
+
+    private long removeDependents(DependentTable table, List<Long> studentIds) {
+        long removed = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(
+                    status -> studentPurgeRepository.deleteDependentBatch(table, studentIds, batchSize));
+            removed += batch;
+        } while (batch == batchSize);
+        return removed;
+    }
+
+    private void cleanUp(List<String> imagePaths) {
+        for (String path : imagePaths) {
+            try {
+                Files.deleteIfExists(Paths.get(path));
+            } catch (IOException e) {
+                log.error("Failed to delete face image file {}", path, e);
+            }
+        }
+        try {
+            faceGallery.get();
+        } catch (Exception e) {
+            log.warn("Could not reload the face gallery after deleting students", e);
+        }
+    }
+}
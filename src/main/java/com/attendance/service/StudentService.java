@@ -1,7 +1,12 @@
 package com.attendance.service;
 
 import com.attendance.dto.StudentDTO;
+import com.attendance.dto.StudentPageDTO;
+import com.attendance.dto.StudentSummaryDTO;
+import com.attendance.model.FaceTemplate;
 import com.attendance.model.Student;
+import com.attendance.repository.FaceTemplateRepository;
+import com.attendance.repository.StudentDirectoryRepository;
 import com.attendance.repository.StudentRepository;
 import com.attendance.util.FaceDetector;
 import com.attendance.util.InputValidationService;
@@ -30,11 +35,16 @@ import java.util.UUID;
 public class StudentService {
 
     private final StudentRepository studentRepository;
+    private final StudentDirectoryRepository studentDirectoryRepository;
+    private final FaceTemplateRepository faceTemplateRepository;
+    private final StudentRemovalService studentRemovalService;
+    private final FaceGallery faceGallery;
     private final FaceRecognitionService faceRecognitionService;
     private final FaceDetector faceDetector;
     private final InputValidationService inputValidationService;
 
     private static final String UPLOAD_DIR = "uploads/faces/";
+    public static final int MAX_PAGE_SIZE = 200;
 
     /**
      * Register a new student with face image
@@ -93,10 +103,14 @@ public class StudentService {
         student.setLastName(studentDTO.getLastName());
         student.setEmail(studentDTO.getEmail());
         student.setDepartment(studentDTO.getDepartment());
-        student.setFaceEncoding(faceEncoding);
         student.setFaceImagePath(faceImagePath);
 
         Student savedStudent = studentRepository.save(student);
+        if (faceEncoding != null) {
+            faceTemplateRepository.save(
+                    new FaceTemplate(savedStudent, faceRecognitionService.getModelVersion(), faceEncoding));
+            faceGallery.invalidateAfterCommit();
+        }
         log.info("Registered student: {}", savedStudent.getStudentId());
 
         return savedStudent;
@@ -138,6 +152,48 @@ public class StudentService {
         return studentRepository.findAll();
     }
 
+    /**
+     * One page of the student directory, using keyset pagination on student ID
+     * so later pages cost the same as the first
+     * 
+     * @param after      Last student ID of the previous page, or null/blank for the first page
+     * @param query      Prefix of a student ID, first name, last name or email, or null/blank
+     * @param department Department to filter on, or null/blank
+     * @param size       Page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return Page of students and the cursor of the next page
+     */
+    @Transactional(readOnly = true)
+    public StudentPageDTO getStudentPage(String after, String query, String department, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String prefix = isBlank(query) ? null : escapeLike(query.trim()) + "%";
+
+        // One extra row tells whether there is a next page without a count query
+        List<StudentSummaryDTO> rows = studentDirectoryRepository.findPage(
+                isBlank(after) ? null : after, prefix, isBlank(department) ? null : department, pageSize + 1);
+
+        if (rows.size() <= pageSize) {
+            return new StudentPageDTO(rows, null);
+        }
+        List<StudentSummaryDTO> page = rows.subList(0, pageSize);
+        return new StudentPageDTO(List.copyOf(page), page.get(pageSize - 1).getStudentId());
+    }
+
+    /**
+     * @return Distinct departments, for directory filters
+     */
+    @Transactional(readOnly = true)
+    public List<String> getDepartments() {
+        return studentRepository.findDepartments();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     /**
      * Get student by ID
      * 
@@ -185,6 +241,8 @@ public class StudentService {
         student.setDepartment(studentDTO.getDepartment());
 
         Student updatedStudent = studentRepository.save(student);
+        // The gallery hands out student names with every match
+        faceGallery.invalidateAfterCommit();
         log.info("Updated student: {}", updatedStudent.getStudentId());
 
         return updatedStudent;
@@ -247,31 +305,25 @@ public class StudentService {
         // becomes '/uploads/faces/uploads/faces/filename.jpg'.
         // Wait, let's check registerStudentWithFace.
 
-        student.setFaceEncoding(faceEncoding);
+        // Replaces the templates of the current model; those of other models are kept
+        String modelVersion = faceRecognitionService.getModelVersion();
+        faceTemplateRepository.deleteByStudentIdAndModelVersion(student.getId(), modelVersion);
+        faceTemplateRepository.save(new FaceTemplate(student, modelVersion, faceEncoding));
+        faceGallery.invalidateAfterCommit();
+
         student.setFaceImagePath(faceImagePath); // Store full relative path (uploads/faces/filename.jpg)
 
         return studentRepository.save(student);
     }
 
     /**
-     * Delete student
+     * Delete student with all of their records
      * 
      * @param id Student ID
      */
-    @Transactional
     public void deleteStudent(Long id) {
         Student student = getStudentById(id);
-
-        // Delete face image file if exists
-        if (student.getFaceImagePath() != null) {
-            try {
-                Files.deleteIfExists(Paths.get(student.getFaceImagePath()));
-            } catch (IOException e) {
-                log.error("Failed to delete face image file", e);
-            }
-        }
-
-        studentRepository.delete(student);
+        studentRemovalService.removeStudents(List.of(student.getId()));
         log.info("Deleted student: {}", student.getStudentId());
     }
 
@@ -0,0 +1,153 @@
+package com.attendance.service;
+
+import com.attendance.config.ReplicaRouting;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import com.attendance.service.AttendanceService.StudentAttendanceStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-student attendance counts, read in bulk with one grouped query and
+ * cached. A committed write drops only the students and classrooms whose
+ * record status it changed; writes that only add detections leave the
+ * counts alone.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StudentStatsCache {
+
+    /** Student IDs per IN list, to keep statements a sane size */
+    private static final int QUERY_CHUNK = 1000;
+
+    private final AttendanceArchiveService attendanceArchiveService;
+
+    private final Map<Long, StudentAttendanceStats> byStudent = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, StudentAttendanceStats>> byClassroom = new ConcurrentHashMap<>();
+
+    // Keeps a load that raced with an invalidation out of the cache
+    private final GenerationGuard guard = new GenerationGuard();
+
+    /**
+     * Counts over all classrooms for each student, in the given order.
+     * Students without records get zero counts.
+     *
+     * @param studentIds Student IDs
+     * @return Statistics per student
+     */
+    public List<StudentAttendanceStats> getForStudents(Collection<Long> studentIds) {
+        Set<Long> ids = new LinkedHashSet<>(studentIds);
+        // Taken in the same pass that finds the misses: an invalidation may drop entries right after
+        Map<Long, StudentAttendanceStats> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            StudentAttendanceStats cached = byStudent.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            found.putAll(guard.load(() -> {
+                Map<Long, StudentAttendanceStats> loaded = new HashMap<>();
+                for (int i = 0; i < missing.size(); i += QUERY_CHUNK) {
+                    List<Long> chunk = missing.subList(i, Math.min(i + QUERY_CHUNK, missing.size()));
+                    loaded.putAll(toStats(chunk, ReplicaRouting.onPrimary(
+                            () -> attendanceArchiveService.countByStatusForStudents(chunk))));
+                }
+                return loaded;
+            }, byStudent::putAll));
+            log.debug("Loaded attendance statistics of {} student(s)", missing.size());
+        }
+
+        // Every missing ID was loaded, with zero counts if it has no rows
+        return ids.stream().map(found::get).toList();
+    }
+
+    /**
+     * Counts within one classroom for every student with a record there
+     *
+     * @param classroomId Classroom ID
+     * @return Statistics per student, ordered by student
+     */
+    public List<StudentAttendanceStats> getForClassroom(Long classroomId) {
+        Map<Long, StudentAttendanceStats> cached = byClassroom.get(classroomId);
+        if (cached == null) {
+            cached = guard.load(() -> toStats(List.of(), ReplicaRouting.onPrimary(
+                    () -> attendanceArchiveService.countByStatusForClassroom(classroomId))),
+                    loaded -> byClassroom.put(classroomId, loaded));
+        }
+        return cached.values().stream()
+                .sorted(Comparator.comparing(StudentAttendanceStats::studentId))
+                .toList();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttendanceChanged(AttendanceChangedEvent event) {
+        if (event.replaced()) {
+            invalidateAll();
+            return;
+        }
+
+        List<StatusTransition> changed = event.transitions().stream()
+                .filter(StatusTransition::statusChanged)
+                .toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+        guard.invalidate(() -> {
+            for (StatusTransition transition : changed) {
+                byStudent.remove(transition.studentId());
+                byClassroom.remove(transition.classroomId());
+            }
+        });
+    }
+
+    /**
+     * Drop everything, for changes that bypass the attendance writer
+     */
+    public void invalidateAll() {
+        guard.invalidate(() -> {
+            byStudent.clear();
+            byClassroom.clear();
+        });
+    }
+
+    /**
+     * @param studentIds Students to include even without rows
+     * @param rows       Rows of [student id, AttendanceStatus, Long], summed when repeated
+     */
+    private static Map<Long, StudentAttendanceStats> toStats(Collection<Long> studentIds, List<Object[]> rows) {
+        Map<Long, Map<AttendanceStatus, Long>> counts = new HashMap<>();
+        studentIds.forEach(id -> counts.put(id, new EnumMap<>(AttendanceStatus.class)));
+        for (Object[] row : rows) {
+            counts.computeIfAbsent((Long) row[0], id -> new EnumMap<>(AttendanceStatus.class))
+                    .merge((AttendanceStatus) row[1], (Long) row[2], Long::sum);
+        }
+
+        Map<Long, StudentAttendanceStats> stats = new HashMap<>();
+        counts.forEach((id, byStatus) -> stats.put(id, new StudentAttendanceStats(id,
+                byStatus.values().stream().mapToLong(Long::longValue).sum(),
+                byStatus.getOrDefault(AttendanceStatus.PRESENT, 0L),
+                byStatus.getOrDefault(AttendanceStatus.LATE, 0L),
+                byStatus.getOrDefault(AttendanceStatus.ABSENT, 0L))));
+        return stats;
+    }
+}
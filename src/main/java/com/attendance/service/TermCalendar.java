@@ -0,0 +1,86 @@
+package com.attendance.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splits the year into terms. A term runs from one configured start day
+ * to the day before the next; the last one of a year runs into the next
+ * year.
+ */
+@Component
+public class TermCalendar {
+
+    private static final DateTimeFormatter START_FORMAT = DateTimeFormatter.ofPattern("MM-dd");
+
+    /**
+     * One term
+     *
+     * @param start First day
+     * @param end   Last day
+     */
+    public record Term(LocalDate start, LocalDate end) {
+
+        public boolean contains(LocalDate date) {
+            return !date.isBefore(start) && !date.isAfter(end);
+        }
+    }
+
+    @Value("${attendance.terms.starts:02-01,09-01}")
+    private List<String> starts;
+
+    private List<MonthDay> startDays;
+
+    @PostConstruct
+    void parse() {
+        TreeSet<MonthDay> days = new TreeSet<>();
+        for (String start : starts) {
+            try {
+                days.add(MonthDay.parse(start.trim(), START_FORMAT));
+            } catch (DateTimeParseException e) {
+                throw new IllegalStateException("Invalid term start (expected MM-dd): " + start, e);
+            }
+        }
+        if (days.isEmpty()) {
+            throw new IllegalStateException("attendance.terms.starts must name at least one day");
+        }
+        startDays = List.copyOf(days);
+    }
+
+    /**
+     * @param date Any day
+     * @return The term containing it
+     */
+    public Term termOf(LocalDate date) {
+        LocalDate start = startOnOrBefore(date);
+        return new Term(start, nextStart(start).minusDays(1));
+    }
+
+    private LocalDate startOnOrBefore(LocalDate date) {
+        MonthDay day = MonthDay.from(date);
+        for (int i = startDays.size() - 1; i >= 0; i--) {
+            if (!startDays.get(i).isAfter(day)) {
+                return startDays.get(i).atYear(date.getYear());
+            }
+        }
+        return startDays.get(startDays.size() - 1).atYear(date.getYear() - 1);
+    }
+
+    private LocalDate nextStart(LocalDate start) {
+        MonthDay day = MonthDay.from(start);
+        for (MonthDay candidate : startDays) {
+            if (candidate.isAfter(day)) {
+                return candidate.atYear(start.getYear());
+            }
+        }
+        return startDays.get(0).atYear(start.getYear() + 1);
+    }
+}
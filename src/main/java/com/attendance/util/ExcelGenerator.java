@@ -1,17 +1,17 @@
 package com.attendance.util;
 
-import com.attendance.model.Attendance;
+import com.attendance.dto.AttendanceRowDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Utility class for generating Excel files from attendance data
@@ -24,50 +24,82 @@ public class ExcelGenerator {
         "Student ID", "Full Name", "Email", "Department", "Check-in Time", "Status"
     };
 
+    // Fixed widths in characters; autoSizeColumn would measure every cell
+    private static final int[] COLUMN_WIDTHS = { 14, 28, 32, 24, 14, 10 };
+    private static final int DATE_COLUMN_WIDTH = 12;
+
+    // Rows kept in memory per sheet before they are flushed to a temp file
+    private static final int ROW_WINDOW = 100;
+
     /**
-     * Generate Excel file from attendance records
+     * Stream attendance records into an Excel file. Only a small window of
+     * rows is held in memory; the rest are flushed to a temporary file and
+     * the finished workbook is written straight to the given stream.
      * 
-     * @param attendanceList List of attendance records
-     * @param date Date for the attendance records
-     * @return ByteArrayInputStream containing Excel file
+     * @param rows Attendance rows, consumed once
+     * @param out  Stream to write the workbook to; not closed
+     * @return Number of rows written
      * @throws IOException if file generation fails
      */
-    public ByteArrayInputStream generateAttendanceExcel(List<Attendance> attendanceList, LocalDate date) 
-            throws IOException {
-        
-        try (Workbook workbook = new XSSFWorkbook(); 
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            
-            Sheet sheet = workbook.createSheet("Attendance");
-
-            // Create header row
-            createHeaderRow(workbook, sheet);
-
-            // Fill data rows
-            int rowIdx = 1;
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-            
-            for (Attendance attendance : attendanceList) {
-                Row row = sheet.createRow(rowIdx++);
-                
-                row.createCell(0).setCellValue(attendance.getStudent().getStudentId());
-                row.createCell(1).setCellValue(attendance.getStudent().getFullName());
-                row.createCell(2).setCellValue(attendance.getStudent().getEmail());
-                row.createCell(3).setCellValue(attendance.getStudent().getDepartment());
-                row.createCell(4).setCellValue(attendance.getCheckInTime().format(timeFormatter));
-                row.createCell(5).setCellValue(attendance.getStatus().toString());
-            }
+    public int writeAttendanceExcel(Stream<AttendanceRowDTO> rows, OutputStream out) throws IOException {
+        try (SXSSFWorkbook workbook = createStreamingWorkbook()) {
+            int written = writeAttendanceSheet(workbook, "Attendance", rows, false);
+            workbook.write(out);
+            log.info("Generated Excel file with {} attendance records", written);
+            return written;
+        }
+    }
 
-            // Auto-size columns
-            for (int i = 0; i < HEADERS.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
+    /**
+     * @return Workbook that keeps only a small window of rows per sheet in memory
+     */
+    public SXSSFWorkbook createStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
 
-            workbook.write(out);
-            log.info("Generated Excel file with {} attendance records", attendanceList.size());
-            
-            return new ByteArrayInputStream(out.toByteArray());
+    /**
+     * Add a sheet of attendance records to a streaming workbook
+     * 
+     * @param workbook  Streaming workbook
+     * @param sheetName Sheet name; made safe for Excel
+     * @param rows      Attendance rows, consumed once
+     * @param withDate  Add a leading date column, for multi-day sheets
+     * @return Number of rows written
+     */
+    public int writeAttendanceSheet(SXSSFWorkbook workbook, String sheetName, Stream<AttendanceRowDTO> rows,
+            boolean withDate) {
+        Sheet sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(sheetName));
+        int offset = withDate ? 1 : 0;
+
+        // Create header row
+        createHeaderRow(workbook, sheet, withDate);
+        if (withDate) {
+            sheet.setColumnWidth(0, DATE_COLUMN_WIDTH * 256);
+        }
+        for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+            sheet.setColumnWidth(i + offset, COLUMN_WIDTHS[i] * 256);
         }
+
+        // Fill data rows
+        int[] rowIdx = { 1 };
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+        rows.forEach(attendance -> {
+            Row row = sheet.createRow(rowIdx[0]++);
+
+            if (withDate) {
+                row.createCell(0).setCellValue(attendance.getAttendanceDate().toString());
+            }
+            row.createCell(offset).setCellValue(attendance.getStudentId());
+            row.createCell(offset + 1).setCellValue(attendance.getFullName());
+            row.createCell(offset + 2).setCellValue(attendance.getEmail());
+            row.createCell(offset + 3).setCellValue(attendance.getDepartment());
+            row.createCell(offset + 4).setCellValue(attendance.getCheckInTime().format(timeFormatter));
+            row.createCell(offset + 5).setCellValue(attendance.getStatus().toString());
+        });
+        return rowIdx[0] - 1;
     }
 
     /**
@@ -75,8 +107,9 @@ public class ExcelGenerator {
      * 
      * @param workbook Excel workbook
      * @param sheet Excel sheet
+     * @param withDate Add a leading date column
      */
-    private void createHeaderRow(Workbook workbook, Sheet sheet) {
+    private void createHeaderRow(Workbook workbook, Sheet sheet, boolean withDate) {
         Row headerRow = sheet.createRow(0);
         
         // Create header style
@@ -95,8 +128,15 @@ public class ExcelGenerator {
         headerStyle.setBorderRight(BorderStyle.THIN);
 
         // Create header cells
+        int offset = 0;
+        if (withDate) {
+            Cell cell = headerRow.createCell(0);
+            cell.setCellValue("Date");
+            cell.setCellStyle(headerStyle);
+            offset = 1;
+        }
         for (int i = 0; i < HEADERS.length; i++) {
-            Cell cell = headerRow.createCell(i);
+            Cell cell = headerRow.createCell(i + offset);
             cell.setCellValue(HEADERS[i]);
             cell.setCellStyle(headerStyle);
         }
@@ -112,4 +152,19 @@ public class ExcelGenerator {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         return String.format("attendance_%s.xlsx", date.format(formatter));
     }
+
+    /**
+     * Generate filename for a date-range export
+     * 
+     * @param label Classroom course code, or null for a multi-classroom file
+     * @param from First date
+     * @param to Last date
+     * @param extension File extension without the dot
+     * @return Formatted filename
+     */
+    public String generateFilename(String label, LocalDate from, LocalDate to, String extension) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        String prefix = label != null ? "attendance_" + label.replaceAll("[^A-Za-z0-9_-]", "_") : "attendance";
+        return String.format("%s_%s_to_%s.%s", prefix, from.format(formatter), to.format(formatter), extension);
+    }
 }
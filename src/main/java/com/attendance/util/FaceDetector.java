@@ -23,9 +23,18 @@ import java.util.List;
 @Component
 public class FaceDetector {
 
-    private CascadeClassifier faceCascade;
     private static final String HAAR_CASCADE_FILE = "haarcascade_frontalface_default.xml";
 
+    /*
+     * A CascadeClassifier is not thread-safe, so every pipeline and capture
+     * thread gets its own. Sharing one behind a lock made interactive uploads
+     * wait behind background burst scoring.
+     */
+    private String cascadePath;
+    private boolean cascadeLoaded;
+    private final ThreadLocal<CascadeClassifier> faceCascade = ThreadLocal.withInitial(
+            () -> cascadePath != null ? new CascadeClassifier(cascadePath) : new CascadeClassifier());
+
     public FaceDetector() {
         try {
             // Load OpenCV native library
@@ -52,14 +61,15 @@ public class FaceDetector {
                 
                 Files.copy(is, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 
-                faceCascade = new CascadeClassifier(tempFile.getAbsolutePath());
+                cascadePath = tempFile.getAbsolutePath();
                 is.close();
             } else {
                 log.warn("Haar cascade file not found in resources, using default path");
-                faceCascade = new CascadeClassifier();
             }
             
-            if (faceCascade.empty()) {
+            // Loaded once here to check the file; each thread loads its own copy on first use
+            cascadeLoaded = !faceCascade.get().empty();
+            if (!cascadeLoaded) {
                 log.error("Failed to load Haar Cascade classifier");
             }
         } catch (IOException e) {
@@ -76,7 +86,7 @@ public class FaceDetector {
     public List<Rect> detectFaces(Mat image) {
         List<Rect> faces = new ArrayList<>();
         
-        if (image.empty() || faceCascade == null || faceCascade.empty()) {
+        if (image.empty() || !cascadeLoaded) {
             log.warn("Invalid image or cascade classifier not loaded");
             return faces;
         }
@@ -87,7 +97,7 @@ public class FaceDetector {
             Imgproc.equalizeHist(grayImage, grayImage);
 
             MatOfRect faceDetections = new MatOfRect();
-            faceCascade.detectMultiScale(grayImage, faceDetections, 1.1, 4, 0,
+            faceCascade.get().detectMultiScale(grayImage, faceDetections, 1.1, 4, 0,
                     new Size(30, 30), new Size());
 
             faces = faceDetections.toList();
@@ -100,6 +110,96 @@ public class FaceDetector {
         return faces;
     }
 
+    /**
+     * Count faces on a downscaled copy of the image. Much cheaper than
+     * {@link #detectFaces(Mat)} and good enough for ranking candidate frames.
+     * 
+     * @param image OpenCV Mat image
+     * @param targetWidth Width to downscale to before detection
+     * @return Number of faces found
+     */
+    public int countFacesDownscaled(Mat image, int targetWidth) {
+        if (image.empty() || !cascadeLoaded) {
+            return 0;
+        }
+
+        Mat grayImage = null;
+        MatOfRect faceDetections = new MatOfRect();
+        try {
+            grayImage = toScaledGray(image, targetWidth);
+            double scale = (double) grayImage.cols() / image.cols();
+            int minFace = Math.max(12, (int) Math.round(30 * scale));
+
+            faceCascade.get().detectMultiScale(grayImage, faceDetections, 1.1, 4, 0,
+                    new Size(minFace, minFace), new Size());
+            return faceDetections.toArray().length;
+        } catch (Exception e) {
+            log.error("Error counting faces", e);
+            return 0;
+        } finally {
+            // Called for every burst frame, like measureSharpness
+            if (grayImage != null) {
+                grayImage.release();
+            }
+            faceDetections.release();
+        }
+    }
+
+    /**
+     * Measure image sharpness as the variance of the Laplacian on a downscaled
+     * grayscale copy. Motion-blurred frames score low.
+     * 
+     * @param image OpenCV Mat image
+     * @param targetWidth Width to downscale to before measuring
+     * @return Sharpness score (higher is sharper)
+     */
+    public double measureSharpness(Mat image, int targetWidth) {
+        if (image.empty()) {
+            return 0.0;
+        }
+
+        Mat grayImage = null;
+        Mat laplacian = new Mat();
+        MatOfDouble mean = new MatOfDouble();
+        MatOfDouble stdDev = new MatOfDouble();
+        try {
+            grayImage = toScaledGray(image, targetWidth);
+            Imgproc.Laplacian(grayImage, laplacian, CvType.CV_64F);
+            Core.meanStdDev(laplacian, mean, stdDev);
+            double sigma = stdDev.get(0, 0)[0];
+            return sigma * sigma;
+        } catch (Exception e) {
+            log.error("Error measuring sharpness", e);
+            return 0.0;
+        } finally {
+            // Called for every burst frame; native memory is not reclaimed by the GC in time
+            if (grayImage != null) {
+                grayImage.release();
+            }
+            laplacian.release();
+            mean.release();
+            stdDev.release();
+        }
+    }
+
+    private Mat toScaledGray(Mat image, int targetWidth) {
+        Mat grayImage = new Mat();
+        if (image.channels() > 1) {
+            Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
+        } else {
+            image.copyTo(grayImage);
+        }
+
+        if (targetWidth > 0 && grayImage.cols() > targetWidth) {
+            double scale = (double) targetWidth / grayImage.cols();
+            Mat resized = new Mat();
+            Imgproc.resize(grayImage, resized, new Size(), scale, scale, Imgproc.INTER_AREA);
+            grayImage.release();
+            grayImage = resized;
+        }
+        return grayImage;
+    }
+
     /**
      * Extract face region from image
      * 
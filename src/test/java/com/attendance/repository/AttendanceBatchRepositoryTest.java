@@ -0,0 +1,110 @@
+package com.attendance.repository;
+
+import com.attendance.model.Classroom;
+import com.attendance.model.Student;
+import com.attendance.repository.AttendanceBatchRepository.AttendanceDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Upserting the same (student, classroom, date) again must merge into the
+ * existing row the way the rollup relies on: counts summed, the earliest
+ * sighting kept, the latest confidence next to the best one.
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import(AttendanceBatchRepository.class)
+class AttendanceBatchRepositoryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    @Autowired
+    private AttendanceBatchRepository attendanceBatchRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long classroomId;
+    private Long studentId;
+    private Long deletedId;
+
+    @BeforeEach
+    void setUp() {
+        classroomId = entityManager.persist(new Classroom(null, "A101", "Fundamentals", "CS101",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), null)).getId();
+        studentId = persistStudent("STU001").getId();
+        Student deleted = persistStudent("STU002");
+        deletedId = deleted.getId();
+        entityManager.remove(deleted);
+        entityManager.flush();
+    }
+
+    @Test
+    void upsertingTheSameKeyAgainMergesIntoOneRow() {
+        attendanceBatchRepository.upsert(List.of(delta(studentId, LocalTime.of(9, 20), 0.7, 0.9, 2)));
+        attendanceBatchRepository.upsert(List.of(delta(studentId, LocalTime.of(9, 5), 0.6, 0.8, 3)));
+
+        Map<String, Object> row = row(studentId);
+        assertThat(((Number) row.get("detection_count")).intValue()).isEqualTo(5);
+        assertThat(((Time) row.get("check_in_time")).toLocalTime()).isEqualTo(LocalTime.of(9, 5));
+        // Latest confidence, best confidence over both
+        assertThat(((Number) row.get("confidence_score")).doubleValue()).isEqualTo(0.6);
+        assertThat(((Number) row.get("max_confidence_score")).doubleValue()).isEqualTo(0.9);
+        assertThat(row.get("status")).isEqualTo(AttendanceBatchRepository.PROVISIONAL_STATUS.name());
+
+        attendanceBatchRepository.upsert(List.of(delta(studentId, LocalTime.of(9, 40), 0.95, 0.95, 1)));
+
+        row = row(studentId);
+        assertThat(((Number) row.get("detection_count")).intValue()).isEqualTo(6);
+        assertThat(((Time) row.get("check_in_time")).toLocalTime()).isEqualTo(LocalTime.of(9, 5));
+        assertThat(((Number) row.get("max_confidence_score")).doubleValue()).isEqualTo(0.95);
+    }
+
+    @Test
+    void deltasOfDeletedStudentsAreSkippedWithoutFailingTheBatch() {
+        attendanceBatchRepository.upsert(List.of(
+                delta(deletedId, LocalTime.of(9, 10), 0.8, 0.8, 1),
+                delta(studentId, LocalTime.of(9, 10), 0.8, 0.8, 1)));
+        attendanceBatchRepository.upsert(List.of(delta(deletedId, LocalTime.of(9, 15), 0.8, 0.8, 1)));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attendance WHERE student_id = ?",
+                Integer.class, deletedId)).isZero();
+        assertThat(((Number) row(studentId).get("detection_count")).intValue()).isEqualTo(1);
+    }
+
+    private AttendanceDelta delta(Long student, LocalTime firstSeen, double confidence, double maxConfidence,
+            int detections) {
+        return new AttendanceDelta(student, classroomId, DAY, firstSeen, confidence, maxConfidence, detections);
+    }
+
+    private Map<String, Object> row(Long student) {
+        return jdbcTemplate.queryForMap("SELECT detection_count, check_in_time, confidence_score, "
+                + "max_confidence_score, status FROM attendance WHERE student_id = ? AND classroom_id = ? "
+                + "AND attendance_date = ?", student, classroomId, DAY);
+    }
+
+    private Student persistStudent(String code) {
+        Student student = new Student();
+        student.setStudentId(code);
+        student.setFirstName("First");
+        student.setLastName(code);
+        student.setEmail(code.toLowerCase() + "@university.edu");
+        student.setDepartment("Computer Science");
+        return entityManager.persist(student);
+    }
+}
@@ -0,0 +1,119 @@
+package com.attendance.repository;
+
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.Attendance;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.model.Classroom;
+import com.attendance.model.Student;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Attendance listings and exports must stay one statement however many
+ * rows they return; a lazy student or classroom sneaking back into the
+ * projection shows up here as extra statements.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+class AttendanceRepositoryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+    private static final int STUDENTS = 5;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long classroomId;
+
+    @BeforeEach
+    void setUp() {
+        Classroom classroom = entityManager.persist(new Classroom(null, "A101", "Fundamentals", "CS101",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), null));
+        Classroom other = entityManager.persist(new Classroom(null, "B205", "Algorithms", "CS201",
+                LocalTime.of(11, 0), LocalTime.of(12, 30), null));
+        classroomId = classroom.getId();
+
+        for (int i = 0; i < STUDENTS; i++) {
+            Student student = new Student();
+            student.setStudentId("STU" + i);
+            student.setFirstName("First" + i);
+            student.setLastName("Last" + i);
+            student.setEmail("student" + i + "@university.edu");
+            student.setDepartment("Computer Science");
+            entityManager.persist(student);
+
+            for (LocalDate date : List.of(DAY.minusDays(1), DAY)) {
+                entityManager.persist(record(student, classroom, date, i));
+                entityManager.persist(record(student, other, date, i));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listAndTodayReadRowsInOneStatement() {
+        List<AttendanceRowDTO> rows = attendanceRepository.findRowsByDateAndClassroom(DAY, classroomId);
+
+        assertThat(rows).hasSize(STUDENTS);
+        assertThat(rows).allSatisfy(row -> {
+            assertThat(row.getFullName()).startsWith("First");
+            assertThat(row.getCourseCode()).isEqualTo("CS101");
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void dayExportStreamsRowsInOneStatement() {
+        try (Stream<AttendanceRowDTO> rows = attendanceRepository.streamRowsByDateAndClassroom(DAY, classroomId)) {
+            assertThat(rows.map(AttendanceRowDTO::getEmail)).hasSize(STUDENTS);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rangeExportStreamsRowsInOneStatement() {
+        try (Stream<AttendanceRowDTO> rows = attendanceRepository.streamRowsByClassroomAndDateRange(classroomId,
+                DAY.minusDays(1), DAY)) {
+            assertThat(rows.map(AttendanceRowDTO::getDepartment)).hasSize(STUDENTS * 2);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private static Attendance record(Student student, Classroom classroom, LocalDate date, int i) {
+        Attendance attendance = new Attendance();
+        attendance.setStudent(student);
+        attendance.setClassroom(classroom);
+        attendance.setAttendanceDate(date);
+        attendance.setCheckInTime(LocalTime.of(9, i));
+        attendance.setStatus(i % 2 == 0 ? AttendanceStatus.PRESENT : AttendanceStatus.LATE);
+        attendance.setConfidenceScore(0.9);
+        attendance.setDetectionCount(3);
+        return attendance;
+    }
+}
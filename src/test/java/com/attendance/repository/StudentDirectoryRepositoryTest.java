@@ -0,0 +1,97 @@
+package com.attendance.repository;
+
+import com.attendance.dto.StudentSummaryDTO;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Directory pages built from per-filter statements must return the same
+ * rows, in student ID order and without duplicates, as a plain filter would.
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import(StudentDirectoryRepository.class)
+class StudentDirectoryRepositoryTest {
+
+    @Autowired
+    private StudentDirectoryRepository studentDirectoryRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        persist("STU003", "Ada", "Lovelace", "ada@university.edu", "Mathematics");
+        persist("STU001", "Alan", "Turing", "turing@university.edu", "Computer Science");
+        persist("AL100", "Grace", "Hopper", "alpha@university.edu", "Computer Science");
+        persist("STU002", "Bob", "Alder", "bob@university.edu", "Computer Science");
+        persist("STU004", "Al_x", "Alvarez", "alx@university.edu", "Physics");
+        entityManager.flush();
+    }
+
+    @Test
+    void pagesWithoutFiltersInStudentIdOrder() {
+        assertThat(ids(studentDirectoryRepository.findPage(null, null, null, 3)))
+                .containsExactly("AL100", "STU001", "STU002");
+        assertThat(ids(studentDirectoryRepository.findPage("STU002", null, null, 3)))
+                .containsExactly("STU003", "STU004");
+    }
+
+    @Test
+    void filtersByDepartmentAfterCursor() {
+        assertThat(ids(studentDirectoryRepository.findPage("AL100", null, "Computer Science", 10)))
+                .containsExactly("STU001", "STU002");
+    }
+
+    @Test
+    void searchMatchesEveryColumnOnceInStudentIdOrder() {
+        // Alan on first name, Alder on last name, Al_x Alvarez on both
+        assertThat(ids(studentDirectoryRepository.findPage(null, "Al%", null, 10)))
+                .containsExactly("STU001", "STU002", "STU004");
+        assertThat(ids(studentDirectoryRepository.findPage("STU001", "Al%", null, 1)))
+                .containsExactly("STU002");
+        assertThat(ids(studentDirectoryRepository.findPage(null, "Al%", "Computer Science", 10)))
+                .containsExactly("STU001", "STU002");
+        // Emails of AL100 and Al_x; then the student ID of AL100
+        assertThat(ids(studentDirectoryRepository.findPage(null, "al%", null, 10)))
+                .containsExactly("AL100", "STU004");
+        assertThat(ids(studentDirectoryRepository.findPage(null, "AL%", null, 10)))
+                .containsExactly("AL100");
+    }
+
+    @Test
+    void searchTreatsEscapedWildcardsLiterally() {
+        assertThat(ids(studentDirectoryRepository.findPage(null, "Al!_%", null, 10)))
+                .containsExactly("STU004");
+    }
+
+    @Test
+    void mapsSummaryColumns() {
+        StudentSummaryDTO row = studentDirectoryRepository.findPage(null, "Ada%", null, 1).get(0);
+        assertThat(row.getFullName()).isEqualTo("Ada Lovelace");
+        assertThat(row.getDepartment()).isEqualTo("Mathematics");
+        assertThat(row.getCreatedAt()).isNotNull();
+    }
+
+    private void persist(String studentId, String firstName, String lastName, String email, String department) {
+        Student student = new Student();
+        student.setStudentId(studentId);
+        student.setFirstName(firstName);
+        student.setLastName(lastName);
+        student.setEmail(email);
+        student.setDepartment(department);
+        entityManager.persist(student);
+    }
+
+    private static List<String> ids(List<StudentSummaryDTO> rows) {
+        return rows.stream().map(StudentSummaryDTO::getStudentId).toList();
+    }
+}
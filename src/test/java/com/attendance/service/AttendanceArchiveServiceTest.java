@@ -0,0 +1,120 @@
+package com.attendance.service;
+
+import com.attendance.dto.AttendanceRowDTO;
+import com.attendance.model.ArchivedTerm;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.model.Classroom;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archiving a term moves its records, day by day, from attendance to
+ * attendance_archive, and reads over an archived range keep returning
+ * them from there.
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import({ AttendanceArchiveService.class, TermCalendar.class })
+class AttendanceArchiveServiceTest {
+
+    // Terms start on February 1st and September 1st
+    private static final LocalDate ARCHIVED_DAY = LocalDate.of(2024, 3, 4);
+    private static final LocalDate LAST_ARCHIVED_DAY = LocalDate.of(2024, 8, 31);
+    private static final LocalDate LIVE_DAY = LocalDate.of(2024, 9, 2);
+
+    @Autowired
+    private AttendanceArchiveService attendanceArchiveService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long classroomId;
+
+    @BeforeEach
+    void setUp() {
+        classroomId = entityManager.persist(new Classroom(null, "A101", "Fundamentals", "CS101",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), null)).getId();
+        Long first = persistStudent("STU001");
+        Long second = persistStudent("STU002");
+        entityManager.flush();
+
+        insertRecord(first, ARCHIVED_DAY, AttendanceStatus.PRESENT);
+        insertRecord(second, ARCHIVED_DAY, AttendanceStatus.ABSENT);
+        insertRecord(first, LAST_ARCHIVED_DAY, AttendanceStatus.LATE);
+        insertRecord(first, LIVE_DAY, AttendanceStatus.PRESENT);
+    }
+
+    @Test
+    void archivingATermMovesEveryRecordOfItsDays() {
+        ArchivedTerm term = attendanceArchiveService.archiveTerm(ARCHIVED_DAY);
+
+        assertThat(term.getStatus()).isEqualTo(ArchivedTerm.Status.ARCHIVED);
+        assertThat(term.getRowsArchived()).isEqualTo(3);
+        assertThat(count("attendance", ARCHIVED_DAY, LAST_ARCHIVED_DAY)).isZero();
+        assertThat(count("attendance_archive", ARCHIVED_DAY, LAST_ARCHIVED_DAY)).isEqualTo(3);
+        // The next term is left alone
+        assertThat(count("attendance", LIVE_DAY, LIVE_DAY)).isEqualTo(1);
+        assertThat(count("attendance_archive", LIVE_DAY, LIVE_DAY)).isZero();
+
+        // Archiving again changes nothing
+        assertThat(attendanceArchiveService.archiveTerm(ARCHIVED_DAY).getRowsArchived()).isEqualTo(3);
+        assertThat(count("attendance_archive", ARCHIVED_DAY, LAST_ARCHIVED_DAY)).isEqualTo(3);
+    }
+
+    @Test
+    void readsOfAnArchivedRangeComeFromTheArchive() {
+        attendanceArchiveService.archiveTerm(ARCHIVED_DAY);
+
+        assertThat(attendanceArchiveService.covers(ARCHIVED_DAY)).isTrue();
+        assertThat(attendanceArchiveService.covers(LIVE_DAY)).isFalse();
+        assertThat(attendanceArchiveService.findRowsByDateAndClassroom(ARCHIVED_DAY, classroomId))
+                .extracting(AttendanceRowDTO::getStudentId)
+                .containsExactlyInAnyOrder("STU001", "STU002");
+
+        // Archived days first, then live ones
+        try (Stream<AttendanceRowDTO> rows = attendanceArchiveService.streamRowsByClassroomAndDateRange(
+                classroomId, LAST_ARCHIVED_DAY, LIVE_DAY)) {
+            assertThat(rows.map(AttendanceRowDTO::getAttendanceDate).toList())
+                    .containsExactly(LAST_ARCHIVED_DAY, LIVE_DAY);
+        }
+        List<Object[]> counts = attendanceArchiveService.countByStatusForClassroom(classroomId);
+        assertThat(counts.stream().mapToLong(row -> (Long) row[2]).sum()).isEqualTo(4);
+    }
+
+    private int count(String table, LocalDate from, LocalDate to) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE attendance_date BETWEEN ? AND ?",
+                Integer.class, from, to);
+    }
+
+    private void insertRecord(Long studentId, LocalDate date, AttendanceStatus status) {
+        jdbcTemplate.update("INSERT INTO attendance (student_id, classroom_id, attendance_date, check_in_time, "
+                + "status, confidence_score, max_confidence_score, detection_count, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, 0.8, 0.8, 1, CURRENT_TIMESTAMP)", studentId, classroomId, date,
+                LocalTime.of(9, 5), status.name());
+    }
+
+    private Long persistStudent(String code) {
+        Student student = new Student();
+        student.setStudentId(code);
+        student.setFirstName("First");
+        student.setLastName(code);
+        student.setEmail(code.toLowerCase() + "@university.edu");
+        student.setDepartment("Computer Science");
+        return entityManager.persist(student).getId();
+    }
+}
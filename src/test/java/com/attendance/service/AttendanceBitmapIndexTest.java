@@ -0,0 +1,119 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.service.AttendanceBitmapIndex.Match;
+import com.attendance.service.AttendanceBitmapIndex.StudentPattern;
+import com.attendance.service.TermCalendar.Term;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.attendance.model.Attendance.AttendanceStatus.ABSENT;
+import static com.attendance.model.Attendance.AttendanceStatus.LATE;
+import static com.attendance.model.Attendance.AttendanceStatus.PRESENT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streaks and rates computed from the bitmaps, over rows served by a
+ * mocked archive service in the order the database returns them.
+ */
+class AttendanceBitmapIndexTest {
+
+    private static final Term TERM = new Term(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 8, 31));
+    private static final Long ROOM = 1L;
+    private static final Long OTHER_ROOM = 2L;
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private AttendanceBitmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        AttendanceArchiveService attendanceArchiveService = mock(AttendanceArchiveService.class);
+        when(attendanceArchiveService.streamStatusByDateRange(any(), any(), any())).thenAnswer(invocation -> {
+            Long classroomId = invocation.getArgument(2);
+            return rows.stream().filter(row -> classroomId == null || classroomId.equals(row[0]));
+        });
+        ClassroomConfigCache classroomConfigCache = mock(ClassroomConfigCache.class);
+        when(classroomConfigCache.classroomExists(anyLong())).thenReturn(true);
+        TermCalendar termCalendar = mock(TermCalendar.class);
+        when(termCalendar.termOf(any())).thenReturn(TERM);
+
+        index = new AttendanceBitmapIndex(attendanceArchiveService, classroomConfigCache, termCalendar,
+                mock(PlatformTransactionManager.class));
+        index.init();
+    }
+
+    @Test
+    void currentStreakRunsFromTermStartForAStudentNeverPresent() {
+        // Student 10 is absent at every lecture since the first; 11 attended the first only
+        lecture(ROOM, 3, ABSENT, PRESENT);
+        lecture(ROOM, 4, ABSENT, ABSENT);
+        lecture(ROOM, 5, ABSENT, ABSENT);
+
+        List<StudentPattern> streaks = index.findAbsenceStreaks(List.of(ROOM), day(3), 1, true, Match.ANY);
+
+        assertThat(streaks).containsExactly(
+                new StudentPattern(10L, ROOM, 3, 0, 3, 3),
+                new StudentPattern(11L, ROOM, 3, 1, 2, 2));
+        assertThat(index.findAbsenceStreaks(List.of(ROOM), day(3), 3, true, Match.ANY))
+                .extracting(StudentPattern::studentId).containsExactly(10L);
+    }
+
+    @Test
+    void lecturesCountFromAStudentsFirstRecord() {
+        lecture(ROOM, 3, PRESENT, null);
+        lecture(ROOM, 4, ABSENT, null);
+        // Student 11 joins mid-term
+        lecture(ROOM, 5, PRESENT, LATE);
+        lecture(ROOM, 6, PRESENT, ABSENT);
+
+        List<StudentPattern> patterns = index.findBelowRate(List.of(ROOM), day(3), 100, Match.ANY);
+
+        assertThat(patterns).containsExactly(
+                new StudentPattern(10L, ROOM, 4, 3, 1, 0),
+                new StudentPattern(11L, ROOM, 2, 1, 1, 1));
+        assertThat(patterns.get(1).getAttendanceRate()).isEqualTo(50.0);
+    }
+
+    @Test
+    void matchesAllOrAnyOfSeveralClassrooms() {
+        // Student 10 misses the last lecture in both classrooms, student 11 in one
+        lecture(ROOM, 3, PRESENT, PRESENT);
+        lecture(ROOM, 4, ABSENT, ABSENT);
+        lecture(OTHER_ROOM, 3, PRESENT, PRESENT);
+        lecture(OTHER_ROOM, 4, ABSENT, PRESENT);
+
+        List<StudentPattern> all = index.findAbsenceStreaks(List.of(ROOM, OTHER_ROOM), day(3), 1, true, Match.ALL);
+        List<StudentPattern> any = index.findAbsenceStreaks(List.of(ROOM, OTHER_ROOM), day(3), 1, true, Match.ANY);
+
+        assertThat(all).extracting(StudentPattern::studentId, StudentPattern::classroomId)
+                .containsExactly(tuple(10L, ROOM), tuple(10L, OTHER_ROOM));
+        assertThat(any).extracting(StudentPattern::studentId, StudentPattern::classroomId)
+                .containsExactly(tuple(10L, ROOM), tuple(10L, OTHER_ROOM), tuple(11L, ROOM));
+    }
+
+    /**
+     * Rows of students 10 and 11 for one lecture; a null status means no record
+     */
+    private void lecture(Long classroomId, int dayOfMonth, AttendanceStatus first, AttendanceStatus second) {
+        if (first != null) {
+            rows.add(new Object[] { classroomId, 10L, day(dayOfMonth), first });
+        }
+        if (second != null) {
+            rows.add(new Object[] { classroomId, 11L, day(dayOfMonth), second });
+        }
+    }
+
+    private static LocalDate day(int dayOfMonth) {
+        return LocalDate.of(2025, 3, dayOfMonth);
+    }
+}
@@ -0,0 +1,96 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.repository.AttendanceBatchRepository;
+import com.attendance.repository.AttendanceBatchRepository.AttendanceState;
+import com.attendance.repository.AttendanceRepository;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import com.attendance.repository.StudentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lecture finalization against a mocked batch repository, for the cases a
+ * real database cannot be made to hit on demand.
+ */
+class AttendanceServiceTest {
+
+    private static final Long CLASSROOM = 3L;
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 5);
+    private static final LocalDate TERM_START = LocalDate.of(2025, 2, 1);
+    private static final LocalTime END = LocalTime.of(10, 30);
+
+    private AttendanceBatchRepository attendanceBatchRepository;
+    private DailySummaryService dailySummaryService;
+    private ApplicationEventPublisher eventPublisher;
+    private AttendanceService attendanceService;
+
+    @BeforeEach
+    void setUp() {
+        attendanceBatchRepository = mock(AttendanceBatchRepository.class);
+        dailySummaryService = mock(DailySummaryService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        TermCalendar termCalendar = mock(TermCalendar.class);
+        when(termCalendar.termOf(DAY)).thenReturn(new TermCalendar.Term(TERM_START, LocalDate.of(2025, 8, 31)));
+        attendanceService = new AttendanceService(mock(AttendanceRepository.class), attendanceBatchRepository,
+                mock(DailyAttendanceStats.class), mock(StudentStatsCache.class), dailySummaryService,
+                mock(AttendanceArchiveService.class), termCalendar, mock(StudentRepository.class), eventPublisher);
+
+        when(attendanceBatchRepository.findStates(CLASSROOM, DAY)).thenReturn(Map.of(
+                1L, new AttendanceState(4, AttendanceStatus.PRESENT),
+                2L, new AttendanceState(2, AttendanceStatus.PRESENT)));
+    }
+
+    @Test
+    void finalizingSettlesStatusesAndRecordsAbsentees() {
+        when(attendanceBatchRepository.findAbsentees(CLASSROOM, DAY, TERM_START)).thenReturn(List.of(9L));
+        when(attendanceBatchRepository.insertAbsent(CLASSROOM, DAY, TERM_START, END)).thenReturn(1);
+
+        SummaryCounts counts = attendanceService.finalizeLecture(CLASSROOM, DAY, 4, END);
+
+        assertThat(List.of(counts.total(), counts.present(), counts.late(), counts.absent()))
+                .containsExactly(3L, 1L, 1L, 1L);
+        verify(attendanceBatchRepository).finalizeStatuses(CLASSROOM, DAY, 4);
+        verify(dailySummaryService).record(any(), anyList());
+    }
+
+    @Test
+    void rosterChangeWhileFinalizingFailsWithoutRecordingAnything() {
+        // A roster student was deleted between finding and inserting the absentees
+        when(attendanceBatchRepository.findAbsentees(CLASSROOM, DAY, TERM_START)).thenReturn(List.of(8L, 9L));
+        when(attendanceBatchRepository.insertAbsent(CLASSROOM, DAY, TERM_START, END)).thenReturn(1);
+
+        assertThatThrownBy(() -> attendanceService.finalizeLecture(CLASSROOM, DAY, 4, END))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("2 expected, 1 inserted");
+        verify(dailySummaryService, never()).record(any(), anyList());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void lectureWithoutRecordsIsLeftAlone() {
+        when(attendanceBatchRepository.findStates(CLASSROOM, DAY)).thenReturn(Map.of());
+
+        SummaryCounts counts = attendanceService.finalizeLecture(CLASSROOM, DAY, 4, END);
+
+        assertThat(counts.total()).isZero();
+        verify(attendanceBatchRepository, never()).finalizeStatuses(any(), any(), anyInt());
+        verify(attendanceBatchRepository, never()).insertAbsent(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,112 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.model.Classroom;
+import com.attendance.model.Student;
+import com.attendance.repository.DailySummaryRepository;
+import com.attendance.repository.DailySummaryRepository.SummaryCounts;
+import com.attendance.repository.StudentPurgeRepository.RemovedRecord;
+import com.attendance.service.AttendanceChangedEvent.StatusTransition;
+import com.attendance.service.DailySummaryService.ReconcileResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The summary moves with every transition and deletion it is told about,
+ * and reconciliation puts a day that drifted anyway back in line with its
+ * records.
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import({ DailySummaryService.class, DailySummaryRepository.class })
+class DailySummaryServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 12);
+
+    @Autowired
+    private DailySummaryService dailySummaryService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long classroomId;
+    private Long first;
+    private Long second;
+
+    @BeforeEach
+    void setUp() {
+        classroomId = entityManager.persist(new Classroom(null, "A101", "Fundamentals", "CS101",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), null)).getId();
+        first = persistStudent("STU001");
+        second = persistStudent("STU002");
+        entityManager.flush();
+    }
+
+    @Test
+    void recordAndForgetMoveTheCounts() {
+        dailySummaryService.record(DAY, List.of(
+                new StatusTransition(first, classroomId, null, AttendanceStatus.PRESENT, 4),
+                new StatusTransition(second, classroomId, null, AttendanceStatus.LATE, 2)));
+        assertTotals(2, 1, 1, 0);
+
+        // Unchanged statuses move nothing; a changed one moves between columns
+        dailySummaryService.record(DAY, List.of(
+                new StatusTransition(first, classroomId, AttendanceStatus.PRESENT, AttendanceStatus.PRESENT, 5),
+                new StatusTransition(second, classroomId, AttendanceStatus.LATE, AttendanceStatus.ABSENT, 2)));
+        assertTotals(2, 1, 0, 1);
+
+        dailySummaryService.forget(List.of(new RemovedRecord(1L, DAY, classroomId, AttendanceStatus.ABSENT)));
+        assertTotals(1, 1, 0, 0);
+    }
+
+    @Test
+    void reconcileRebuildsADriftedDay() {
+        insertRecord(first, AttendanceStatus.PRESENT);
+        insertRecord(second, AttendanceStatus.LATE);
+        dailySummaryService.record(DAY, List.of(
+                new StatusTransition(first, classroomId, null, AttendanceStatus.PRESENT, 4)));
+
+        ReconcileResult result = dailySummaryService.reconcile(DAY.minusDays(1), DAY);
+
+        assertThat(result.daysChecked()).isEqualTo(2);
+        assertThat(result.daysRepaired()).isEqualTo(1);
+        assertTotals(2, 1, 1, 0);
+        assertThat(dailySummaryService.reconcile(DAY.minusDays(1), DAY).daysRepaired()).isZero();
+    }
+
+    private void assertTotals(long total, long present, long late, long absent) {
+        SummaryCounts totals = dailySummaryService.getTotals(DAY);
+        assertThat(List.of(totals.total(), totals.present(), totals.late(), totals.absent()))
+                .containsExactly(total, present, late, absent);
+    }
+
+    private void insertRecord(Long studentId, AttendanceStatus status) {
+        jdbcTemplate.update("INSERT INTO attendance (student_id, classroom_id, attendance_date, check_in_time, "
+                + "status, confidence_score, max_confidence_score, detection_count, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, 0.8, 0.8, 1, CURRENT_TIMESTAMP)", studentId, classroomId, DAY,
+                LocalTime.of(9, 5), status.name());
+    }
+
+    private Long persistStudent(String code) {
+        Student student = new Student();
+        student.setStudentId(code);
+        student.setFirstName("First");
+        student.setLastName(code);
+        student.setEmail(code.toLowerCase() + "@university.edu");
+        student.setDepartment("Computer Science");
+        return entityManager.persist(student).getId();
+    }
+}
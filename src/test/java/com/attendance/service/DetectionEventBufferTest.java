@@ -0,0 +1,157 @@
+package com.attendance.service;
+
+import com.attendance.model.Student;
+import com.attendance.pipeline.Recognition;
+import com.attendance.repository.DetectionEventRepository.Detection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Detections must reach the event log exactly once across failed flushes
+ * and crashes. The event service is mocked; it remembers the committed
+ * journal segment the way the watermark table does.
+ */
+class DetectionEventBufferTest {
+
+    private static final Long CLASSROOM = 7L;
+
+    @TempDir
+    Path journalDir;
+
+    private DetectionEventService detectionEventService;
+    private final AtomicLong committedSegment = new AtomicLong();
+    private final List<Detection> appended = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        detectionEventService = mock(DetectionEventService.class);
+        when(detectionEventService.getFlushedJournalSegment()).thenAnswer(invocation -> committedSegment.get());
+        doAnswer(invocation -> {
+            appended.addAll(invocation.getArgument(0));
+            committedSegment.set(invocation.getArgument(1));
+            return null;
+        }).when(detectionEventService).append(anyList(), anyLong());
+    }
+
+    @Test
+    void replaysDetectionsLeftInTheJournalByACrash() throws IOException {
+        // Segment numbers continue past the committed mark even with an empty journal directory
+        committedSegment.set(5);
+        DetectionEventBuffer crashed = buffer();
+        crashed.record(CLASSROOM, recognitions(1L, 2L));
+        crashed.record(CLASSROOM, recognitions(3L));
+
+        DetectionEventBuffer restarted = buffer();
+
+        assertThat(appended).extracting(Detection::studentId).containsExactly(1L, 2L, 3L);
+        assertThat(committedSegment.get()).isGreaterThan(5);
+        restarted.shutdown();
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void doesNotReplaySegmentsCommittedBeforeTheirDeletion() throws IOException {
+        DetectionEventBuffer buffer = buffer();
+        buffer.record(CLASSROOM, recognitions(1L, 2L));
+        Map<Path, byte[]> leftOver = new HashMap<>();
+        for (Path segment : segments()) {
+            leftOver.put(segment, Files.readAllBytes(segment));
+        }
+        buffer.flush();
+        // As if deleting the flushed segment had failed
+        for (Map.Entry<Path, byte[]> segment : leftOver.entrySet()) {
+            Files.write(segment.getKey(), segment.getValue());
+        }
+
+        buffer();
+
+        assertThat(appended).extracting(Detection::studentId).containsExactly(1L, 2L);
+        verify(detectionEventService, times(1)).append(anyList(), anyLong());
+        for (Path segment : leftOver.keySet()) {
+            assertThat(segment).doesNotExist();
+        }
+    }
+
+    @Test
+    void requeuesAFailedFlushAheadOfNewerDetections() throws IOException {
+        DetectionEventBuffer buffer = buffer();
+        buffer.record(CLASSROOM, recognitions(1L, 2L));
+        doThrow(new IllegalStateException("database down"))
+                .doAnswer(invocation -> {
+                    appended.addAll(invocation.getArgument(0));
+                    committedSegment.set(invocation.getArgument(1));
+                    return null;
+                })
+                .when(detectionEventService).append(anyList(), anyLong());
+
+        assertThatThrownBy(buffer::flush).isInstanceOf(IllegalStateException.class);
+        assertThat(appended).isEmpty();
+        assertThat(committedSegment.get()).isZero();
+
+        buffer.record(CLASSROOM, recognitions(3L));
+        buffer.flush();
+
+        assertThat(appended).extracting(Detection::studentId).containsExactly(1L, 2L, 3L);
+        // Both rotated-out segments are committed and gone; only the live one is left
+        assertThat(segments()).hasSize(1);
+        ArgumentCaptor<Long> segment = ArgumentCaptor.forClass(Long.class);
+        verify(detectionEventService, times(2)).append(anyList(), segment.capture());
+        assertThat(segment.getValue()).isEqualTo(committedSegment.get());
+    }
+
+    @Test
+    void emptyFlushTouchesNothing() throws IOException {
+        DetectionEventBuffer buffer = buffer();
+        buffer.flush();
+        verify(detectionEventService, never()).append(anyList(), anyLong());
+    }
+
+    private DetectionEventBuffer buffer() throws IOException {
+        DetectionEventBuffer buffer = new DetectionEventBuffer(detectionEventService);
+        ReflectionTestUtils.setField(buffer, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(buffer, "journalSync", false);
+        buffer.init();
+        return buffer;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.toList();
+        }
+    }
+
+    private static List<Recognition> recognitions(Long... studentIds) {
+        List<Recognition> recognitions = new ArrayList<>();
+        for (Long id : studentIds) {
+            Student student = new Student();
+            student.setId(id);
+            recognitions.add(new Recognition(student, 0.9));
+        }
+        return recognitions;
+    }
+}
@@ -0,0 +1,270 @@
+package com.attendance.service;
+
+import com.attendance.model.Attendance;
+import com.attendance.model.Attendance.AttendanceStatus;
+import com.attendance.model.Classroom;
+import com.attendance.model.LectureSession;
+import com.attendance.model.Student;
+import com.attendance.repository.AttendanceRepository;
+import com.attendance.repository.ClassroomRepository;
+import com.attendance.repository.DetectionEventRepository.Detection;
+import com.attendance.repository.StudentRepository;
+import com.attendance.scheduler.AttendanceScheduler;
+import com.attendance.service.DetectionEventService.RollupStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Rollup and rebuild against a real database. Rollup batches hold two
+ * events, so every scenario spans several watermark transactions. Lectures
+ * plan the default four snapshots: four detections are PRESENT, two LATE.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:detection-events;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=never",
+        "attendance.rollup.batch-size=2",
+        "attendance.rollup.interval-ms=3600000",
+        "attendance.finalize.interval-ms=3600000",
+        "attendance.write-behind.flush-interval-ms=3600000",
+        "attendance.write-behind.journal-dir=target/test-journal",
+        "reports.cache-dir=target/test-reports"
+})
+class DetectionEventServiceTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private DetectionEventService detectionEventService;
+
+    @Autowired
+    private ClassroomRepository classroomRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private StudentRemovalService studentRemovalService;
+
+    @Autowired
+    private AttendanceScheduler attendanceScheduler;
+
+    @Autowired
+    private TermCalendar termCalendar;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long classroomId;
+    private Long first;
+    private Long second;
+    private Long third;
+
+    @BeforeEach
+    void setUp() {
+        int n = SEQUENCE.incrementAndGet();
+        classroomId = classroomRepository.save(new Classroom(null, "R" + n, "Rollup " + n, "ROLL" + n,
+                LocalTime.of(9, 0), LocalTime.of(10, 30), null)).getId();
+        first = student(n, "a");
+        second = student(n, "b");
+        third = student(n, "c");
+    }
+
+    @Test
+    void watermarkAdvancesAcrossBatchesCountingEveryEventOnce() {
+        LocalDate day = LocalDate.of(2025, 3, 4);
+        detectionEventService.append(detections(day, first, 4));
+        detectionEventService.append(detections(day, second, 1));
+
+        assertThat(detectionEventService.rollUp()).isEqualTo(5);
+        assertCaughtUp();
+        assertThat(record(first, day).getDetectionCount()).isEqualTo(4);
+        assertThat(record(second, day).getDetectionCount()).isEqualTo(1);
+
+        detectionEventService.append(detections(day, second, 2));
+
+        assertThat(detectionEventService.rollUp()).isEqualTo(2);
+        assertCaughtUp();
+        assertThat(detectionEventService.rollUp()).isZero();
+        assertThat(record(first, day).getDetectionCount()).isEqualTo(4);
+        assertThat(record(second, day).getDetectionCount()).isEqualTo(3);
+        // A past day is finalized as it is rolled up, again once later events arrive
+        assertThat(record(first, day).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+        assertThat(record(second, day).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+    }
+
+    @Test
+    void rebuildRestoresAFinalizedDayFromItsEvents() {
+        LocalDate before = LocalDate.of(2025, 3, 11);
+        LocalDate day = LocalDate.of(2025, 3, 12);
+        detectionEventService.append(detections(before, third, 4));
+        detectionEventService.append(detections(day, first, 4));
+        detectionEventService.append(detections(day, second, 2));
+        detectionEventService.rollUp();
+        assertFinalized(day);
+
+        // Drift the stored day away from its events
+        jdbcTemplate.update("UPDATE attendance SET detection_count = 1, status = 'ABSENT' "
+                + "WHERE classroom_id = ? AND attendance_date = ?", classroomId, day);
+        jdbcTemplate.update("DELETE FROM attendance WHERE student_id = ? AND attendance_date = ?", third, day);
+
+        assertThat(detectionEventService.rebuild(day)).isEqualTo(2);
+
+        assertFinalized(day);
+        assertThat(record(first, day).getDetectionCount()).isEqualTo(4);
+        assertThat(record(second, day).getDetectionCount()).isEqualTo(2);
+        assertThat(record(third, before).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+    }
+
+    @Test
+    void lateRecordsAreSettledAndFinalizingAgainChangesNothing() {
+        LocalDate before = LocalDate.of(2025, 3, 24);
+        LocalDate day = LocalDate.of(2025, 3, 25);
+        detectionEventService.append(detections(before, second, 4));
+        detectionEventService.append(detections(before, third, 4));
+        detectionEventService.append(detections(day, first, 4));
+        detectionEventService.rollUp();
+        assertThat(record(second, day).getStatus()).isEqualTo(AttendanceStatus.ABSENT);
+
+        // Detections of a finalized lecture arriving late turn the ABSENT record into a counted one
+        detectionEventService.append(detections(day, second, 2));
+        detectionEventService.rollUp();
+
+        assertThat(record(second, day).getStatus()).isEqualTo(AttendanceStatus.LATE);
+        assertThat(record(second, day).getDetectionCount()).isEqualTo(2);
+        assertSession(day, 1, 1, 1);
+
+        LectureSession again = detectionEventService.finalizeLecture(classroomId, day);
+
+        assertThat(List.of(again.getPresent(), again.getLate(), again.getAbsent())).containsExactly(1L, 1L, 1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attendance WHERE classroom_id = ? "
+                + "AND attendance_date = ?", Integer.class, classroomId, day)).isEqualTo(3);
+        assertThat(record(first, day).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+        assertThat(record(third, day).getStatus()).isEqualTo(AttendanceStatus.ABSENT);
+    }
+
+    @Test
+    void rollupSkipsDetectionsOfRemovedStudents() {
+        LocalDate day = LocalDate.of(2025, 3, 18);
+        detectionEventService.append(detections(day, third, 2));
+        studentRemovalService.removeStudents(List.of(third));
+        // Flushed from a buffer after the student was gone
+        detectionEventService.append(detections(day, third, 2));
+        detectionEventService.append(detections(day, first, 4));
+
+        detectionEventService.rollUp();
+
+        assertCaughtUp();
+        assertThat(record(first, day).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+        assertThat(attendanceRepository.findByStudentIdAndClassroomIdAndAttendanceDate(third, classroomId, day))
+                .isEmpty();
+    }
+
+    @Test
+    void uploadIsAppliedWithoutWaitingForTheRollup() {
+        LocalDate today = LocalDate.now();
+        detectionEventService.append(detections(today, first, 1));
+
+        // A rollup, rebuild or removal holds the rollup lock on this thread meanwhile
+        detectionEventService.whileRollupPaused(() -> CompletableFuture
+                .runAsync(() -> detectionEventService.appendAndApply(detections(today, second, 2)))
+                .orTimeout(10, TimeUnit.SECONDS)
+                .join());
+
+        assertThat(record(second, today).getDetectionCount()).isEqualTo(2);
+        assertThat(attendanceRepository.findByStudentIdAndClassroomIdAndAttendanceDate(first, classroomId, today))
+                .isEmpty();
+
+        // The rollup only counts the camera event; a rebuild counts both
+        assertThat(detectionEventService.rollUp()).isEqualTo(1);
+        assertCaughtUp();
+        assertThat(record(second, today).getDetectionCount()).isEqualTo(2);
+        detectionEventService.rebuild(today);
+        assertThat(record(first, today).getDetectionCount()).isEqualTo(1);
+        assertThat(record(second, today).getDetectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void uploadOnlyLectureIsFinalizedOnceItEnds() {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+        assumeTrue(termCalendar.termOf(today).contains(yesterday), "the term must have started before today");
+        // No camera config, and the lecture ended at midnight
+        int n = SEQUENCE.incrementAndGet();
+        classroomId = classroomRepository.save(new Classroom(null, "U" + n, "Uploads " + n, "UPL" + n,
+                LocalTime.MIN, LocalTime.MIN, null)).getId();
+        detectionEventService.append(detections(yesterday, second, 4));
+        detectionEventService.rollUp();
+        detectionEventService.appendAndApply(detections(today, first, 2));
+
+        attendanceScheduler.finalizeEndedLectures();
+
+        assertThat(record(first, today).getStatus()).isEqualTo(AttendanceStatus.LATE);
+        // On the roster from yesterday's upload
+        assertThat(record(second, today).getStatus()).isEqualTo(AttendanceStatus.ABSENT);
+        assertThat(detectionEventService.findUnfinalized(today, List.of(classroomId))).isEmpty();
+    }
+
+    private void assertFinalized(LocalDate day) {
+        assertThat(record(first, day).getStatus()).isEqualTo(AttendanceStatus.PRESENT);
+        assertThat(record(second, day).getStatus()).isEqualTo(AttendanceStatus.LATE);
+        // On the roster from the day before, so absent
+        assertThat(record(third, day).getStatus()).isEqualTo(AttendanceStatus.ABSENT);
+        assertSession(day, 1, 1, 1);
+    }
+
+    private void assertSession(LocalDate day, long present, long late, long absent) {
+        LectureSession session = detectionEventService.getLectureSessions(day).stream()
+                .filter(s -> s.getClassroomId().equals(classroomId))
+                .findFirst()
+                .orElseThrow();
+        assertThat(session.getStatus()).isEqualTo(LectureSession.Status.FINALIZED);
+        assertThat(List.of(session.getPresent(), session.getLate(), session.getAbsent()))
+                .containsExactly(present, late, absent);
+    }
+
+    private void assertCaughtUp() {
+        RollupStatus status = detectionEventService.getStatus();
+        assertThat(status.rolledUpEventId()).isEqualTo(status.lastEventId());
+        assertThat(status.pendingEvents()).isZero();
+    }
+
+    private Attendance record(Long studentId, LocalDate date) {
+        return attendanceRepository.findByStudentIdAndClassroomIdAndAttendanceDate(studentId, classroomId, date)
+                .orElseThrow();
+    }
+
+    private List<Detection> detections(LocalDate date, Long studentId, int count) {
+        List<Detection> detections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            detections.add(new Detection(studentId, classroomId, date, LocalTime.of(9, 10 * i), 0.8));
+        }
+        return detections;
+    }
+
+    private Long student(int n, String suffix) {
+        Student student = new Student();
+        student.setStudentId("ROLL" + n + suffix);
+        student.setFirstName("Roll");
+        student.setLastName(n + suffix);
+        student.setEmail("roll" + n + suffix + "@university.edu");
+        student.setDepartment("Computer Science");
+        return studentRepository.save(student).getId();
+    }
+}
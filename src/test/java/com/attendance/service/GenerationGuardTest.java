@@ -0,0 +1,37 @@
+package com.attendance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A load is stored only if no invalidation ran while it was reading.
+ */
+class GenerationGuardTest {
+
+    private final GenerationGuard guard = new GenerationGuard();
+    private final AtomicReference<String> cache = new AtomicReference<>();
+
+    @Test
+    void loadIsStoredWhenNothingInvalidates() {
+        assertThat(guard.load(() -> "loaded", cache::set)).isEqualTo("loaded");
+        assertThat(cache.get()).isEqualTo("loaded");
+    }
+
+    @Test
+    void loadThatRacedWithAnInvalidationIsReturnedButNotStored() {
+        String loaded = guard.load(() -> {
+            guard.invalidate(() -> cache.set(null));
+            return "stale";
+        }, cache::set);
+
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(cache.get()).isNull();
+
+        // The next load sees the new generation
+        guard.load(() -> "fresh", cache::set);
+        assertThat(cache.get()).isEqualTo("fresh");
+    }
+}